@@ -0,0 +1,120 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Writes synthetic class files into a class directory. Every class has a default constructor and a number of static methods, every method
+ * has a number of conditional branches with their own source lines, so the classes have lines, branches and probes like compiled code.
+ */
+public final class ClassCorpus {
+
+  private ClassCorpus() {
+  }
+
+  /**
+   * @param index
+   *          The index of a class.
+   * 
+   * @return The VM name of the class, ten classes are put into a package.
+   */
+  public static String getClassName(int index) {
+    return String.format("synthetic/p%d/C%d", index / 10, index);
+  }
+
+  /**
+   * Generates the classes.
+   * 
+   * @param classesDirectory
+   *          The class directory.
+   * @param classes
+   *          The number of classes.
+   * @param methods
+   *          The number of methods in a class.
+   * @param branches
+   *          The number of conditional branches in a method.
+   * 
+   * @throws IOException
+   */
+  public static void writeClasses(File classesDirectory, int classes, int methods, int branches) throws IOException {
+    for (int i = 0; i < classes; i++) {
+      String className = getClassName(i);
+      File classFile = new File(classesDirectory, className + ".class");
+
+      classFile.getParentFile().mkdirs();
+
+      Files.write(classFile.toPath(), createClass(className, methods, branches));
+    }
+  }
+
+  /**
+   * Creates the bytecode of a class.
+   */
+  static byte[] createClass(String className, int methods, int branches) {
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+
+    writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+    writer.visitSource(className.substring(className.lastIndexOf('/') + 1) + ".java", null);
+
+    int line = 1;
+
+    MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    line = visitLine(constructor, line);
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+
+    for (int m = 0; m < methods; m++) {
+      MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + m, "(I)I", null, null);
+      method.visitCode();
+
+      // if ((x & (1 << b)) != 0) { x += b; } else { x -= 1; }
+      for (int b = 0; b < branches; b++) {
+        Label otherwise = new Label();
+        Label end = new Label();
+
+        line = visitLine(method, line);
+        method.visitVarInsn(Opcodes.ILOAD, 0);
+        method.visitLdcInsn(1 << (b % 31));
+        method.visitInsn(Opcodes.IAND);
+        method.visitJumpInsn(Opcodes.IFEQ, otherwise);
+        line = visitLine(method, line);
+        method.visitIincInsn(0, b % 128);
+        method.visitJumpInsn(Opcodes.GOTO, end);
+        method.visitLabel(otherwise);
+        line = visitLine(method, line);
+        method.visitIincInsn(0, -1);
+        method.visitLabel(end);
+      }
+
+      line = visitLine(method, line);
+      method.visitVarInsn(Opcodes.ILOAD, 0);
+      method.visitInsn(Opcodes.IRETURN);
+      method.visitMaxs(0, 0);
+      method.visitEnd();
+    }
+
+    writer.visitEnd();
+
+    return writer.toByteArray();
+  }
+
+  private static int visitLine(MethodVisitor method, int line) {
+    Label label = new Label();
+
+    method.visitLabel(label);
+    method.visitLineNumber(line, label);
+
+    return line + 1;
+  }
+
+}
@@ -0,0 +1,105 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import hu.sed.soda.tools.StructureCache;
+
+/**
+ * Generates a synthetic project build directory for scale testing the report goal:
+ * <ul>
+ * <li>&lt;output&gt;/classes: the generated class files,</li>
+ * <li>&lt;output&gt;/jacoco: the exec files and the map file of the tests in the layout of the listeners.</li>
+ * </ul>
+ * These are the default locations of the report goal when &lt;output&gt; is the build directory of a project. The probes of the classes are
+ * counted by analyzing the generated class files, so the exec files always match them.
+ * 
+ * Usage: java -cp target/benchmarks.jar hu.sed.soda.tools.benchmarks.CorpusGenerator --output=DIR [--classes=1000] [--methods=10]
+ * [--branches=4] [--tests=1000] [--classesPerTest=20] [--probeDensity=0.5] [--seed=42] [--revision=0]
+ */
+public final class CorpusGenerator {
+
+  private CorpusGenerator() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new LinkedHashMap<String, String>();
+
+    options.put("output", null);
+    options.put("classes", "1000");
+    options.put("methods", "10");
+    options.put("branches", "4");
+    options.put("tests", "1000");
+    options.put("classesPerTest", "20");
+    options.put("probeDensity", "0.5");
+    options.put("seed", "42");
+    options.put("revision", "0");
+
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      String name = separator < 0 ? "" : arg.substring(2, separator);
+
+      if (!arg.startsWith("--") || !options.containsKey(name)) {
+        throw new IllegalArgumentException("Unknown option: " + arg + ", valid options are " + options.keySet());
+      }
+
+      options.put(name, arg.substring(separator + 1));
+    }
+
+    if (options.get("output") == null) {
+      throw new IllegalArgumentException("Missing option: --output");
+    }
+
+    File output = new File(options.get("output"));
+
+    generate(output, Integer.parseInt(options.get("classes")), Integer.parseInt(options.get("methods")), Integer.parseInt(options.get("branches")),
+        Integer.parseInt(options.get("tests")), Integer.parseInt(options.get("classesPerTest")), Double.parseDouble(options.get("probeDensity")),
+        Long.parseLong(options.get("seed")), options.get("revision"));
+
+    System.out.println("Corpus has been generated into " + output.getAbsolutePath() + " with " + options);
+  }
+
+  /**
+   * Generates the classes and the coverage data of the tests.
+   * 
+   * @param output
+   *          The build directory.
+   * @param classes
+   *          The number of classes.
+   * @param methods
+   *          The number of methods in a class.
+   * @param branches
+   *          The number of conditional branches in a method.
+   * @param tests
+   *          The number of tests.
+   * @param classesPerTest
+   *          The number of classes covered by a test.
+   * @param probeDensity
+   *          The probability of a probe of a covered class being executed.
+   * @param seed
+   *          The seed of the random generator.
+   * @param revision
+   *          The revision identifier used in the name of the map file.
+   * 
+   * @throws IOException
+   */
+  public static void generate(File output, int classes, int methods, int branches, int tests, int classesPerTest, double probeDensity, long seed,
+      String revision) throws IOException {
+    File classesDirectory = getClassesDirectory(output);
+
+    ClassCorpus.writeClasses(classesDirectory, classes, methods, branches);
+
+    ReportCorpus.writeTests(getBaseDirectory(output), revision, StructureCache.analyze(classesDirectory), tests, classesPerTest, probeDensity, seed);
+  }
+
+  public static File getClassesDirectory(File output) {
+    return new File(output, "classes");
+  }
+
+  public static File getBaseDirectory(File output) {
+    return new File(output, "jacoco");
+  }
+
+}
@@ -0,0 +1,63 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.tools.ExecFileLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hu.sed.soda.tools.CoverageDumper;
+import hu.sed.soda.tools.LocalCoverageDumper;
+import hu.sed.soda.tools.benchmarks.workload.Workload;
+
+/**
+ * Measures the latency of the requests sent to the JaCoCo agent of the actual JVM between two tests. Everything except the harness is
+ * instrumented, so the agent holds the execution data of a few hundred classes, like in a real test JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-javaagent:target/jacocoagent.jar=output=none,excludes=org.openjdk.jmh.*:*.jmh_generated.*")
+@State(Scope.Benchmark)
+public class DumpBenchmark {
+
+  private CoverageDumper dumper;
+
+  private int seed;
+
+  @Setup
+  public void setUp() {
+    dumper = new LocalCoverageDumper();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    dumper.close();
+  }
+
+  @Benchmark
+  public ExecFileLoader dumpAndReset() throws IOException {
+    Workload.run(seed++);
+
+    return dumper.dumpAndReset();
+  }
+
+  @Benchmark
+  public int reset() throws IOException {
+    dumper.reset();
+
+    return Workload.run(seed++);
+  }
+
+}
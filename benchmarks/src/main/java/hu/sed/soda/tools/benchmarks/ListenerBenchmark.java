@@ -0,0 +1,128 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.runner.Description;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.sed.soda.tools.CustomTestExecutionListener;
+import hu.sed.soda.tools.SimpleInstrumentationListener;
+import hu.sed.soda.tools.TestResultsDumpListener;
+import hu.sed.soda.tools.benchmarks.workload.Workload;
+
+/**
+ * Measures what the listeners add to a single test: the events of a test from its start to its end, including the coverage dump of the
+ * {@link CustomTestExecutionListener}. Every invocation runs {@link #TESTS} tests with unique names, the score is the cost of one test.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(value = 1, jvmArgsAppend = { "-javaagent:target/jacocoagent.jar=output=none,includes=hu.sed.soda.tools.benchmarks.workload.*",
+    "-Dsoda.baseDirectory=target/benchmark-output", "-Dsoda.agent.mode=local" })
+@State(Scope.Benchmark)
+public class ListenerBenchmark {
+
+  static final int TESTS = 1000;
+
+  /**
+   * Whether the listeners log every event into their log files.
+   */
+  @Param({ "false" })
+  private boolean logging;
+
+  private final AtomicInteger testCounter = new AtomicInteger();
+
+  private Description[] descriptions;
+
+  private CustomTestExecutionListener customListener;
+
+  private TestResultsDumpListener resultsListener;
+
+  private SimpleInstrumentationListener instrumentationListener;
+
+  @Setup
+  public void setUp() {
+    customListener = new CustomTestExecutionListener();
+    resultsListener = new TestResultsDumpListener();
+    instrumentationListener = new SimpleInstrumentationListener();
+
+    // The console would be flooded by the events, only the log files of the listeners are written.
+    Logger root = Logger.getLogger("");
+
+    for (Handler handler : root.getHandlers()) {
+      root.removeHandler(handler);
+    }
+
+    Level level = logging ? Level.INFO : Level.WARNING;
+
+    Logger.getLogger(CustomTestExecutionListener.class.getName()).setLevel(level);
+    Logger.getLogger(TestResultsDumpListener.class.getName()).setLevel(level);
+    Logger.getLogger(SimpleInstrumentationListener.class.getName()).setLevel(level);
+  }
+
+  /**
+   * Creates new test names for every invocation, since the coverage of a test is only dumped for its first run.
+   */
+  @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+  public void createDescriptions() {
+    descriptions = new Description[TESTS];
+
+    for (int i = 0; i < TESTS; i++) {
+      descriptions[i] = Description.createTestDescription(ListenerBenchmark.class, "test" + testCounter.getAndIncrement());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TESTS)
+  public void customTestExecutionListener(Blackhole blackhole) throws Exception {
+    for (Description description : descriptions) {
+      customListener.testStarted(description);
+
+      blackhole.consume(Workload.run(description.hashCode()));
+
+      customListener.testFinished(description);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TESTS)
+  public void testResultsDumpListener(Blackhole blackhole) throws Exception {
+    for (Description description : descriptions) {
+      resultsListener.testStarted(description);
+
+      blackhole.consume(Workload.run(description.hashCode()));
+
+      resultsListener.testFinished(description);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TESTS)
+  public void simpleInstrumentationListener(Blackhole blackhole) throws Exception {
+    for (Description description : descriptions) {
+      instrumentationListener.testStarted(description);
+
+      blackhole.consume(Workload.run(description.hashCode()));
+
+      instrumentationListener.testFinished(description);
+    }
+  }
+
+}
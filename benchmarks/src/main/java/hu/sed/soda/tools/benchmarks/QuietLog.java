@@ -0,0 +1,28 @@
+package hu.sed.soda.tools.benchmarks;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Suppresses the progress messages of the mojos, the warnings and errors are still printed.
+ */
+public class QuietLog extends SystemStreamLog {
+
+  @Override
+  public void debug(CharSequence content) {
+  }
+
+  @Override
+  public void info(CharSequence content) {
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return false;
+  }
+
+}
@@ -0,0 +1,103 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.runner.Description;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hu.sed.soda.tools.SimpleInstrumentationListener;
+
+/**
+ * Measures the throughput of {@link SimpleInstrumentationListener#recordCoverage(String)}. Every benchmark thread runs its own test, as
+ * parallel TestNG methods do, and records hits of a fixed set of mutations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RecordCoverageBenchmark {
+
+  private static final AtomicInteger TEST_COUNTER = new AtomicInteger();
+
+  /**
+   * The shared mutation identifiers.
+   */
+  @State(Scope.Benchmark)
+  public static class Mutations {
+
+    /**
+     * The number of distinct mutations, a power of two.
+     */
+    @Param({ "1024", "65536" })
+    private int mutations;
+
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+      Logger.getLogger(SimpleInstrumentationListener.class.getName()).setLevel(Level.WARNING);
+
+      ids = new String[mutations];
+
+      for (int i = 0; i < mutations; i++) {
+        ids[i] = "mutation" + i;
+      }
+    }
+
+  }
+
+  /**
+   * The test running on a benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class RunningTest {
+
+    private final SimpleInstrumentationListener listener = new SimpleInstrumentationListener();
+
+    private Description description;
+
+    private int index;
+
+    @Setup
+    public void setUp() throws Exception {
+      description = Description.createTestDescription(RecordCoverageBenchmark.class, "test" + TEST_COUNTER.getAndIncrement());
+
+      listener.testStarted(description);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+      listener.testFinished(description);
+    }
+
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean singleThreaded(Mutations mutations, RunningTest test) {
+    return SimpleInstrumentationListener.recordCoverage(mutations.ids[test.index++ & (mutations.ids.length - 1)]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean contended(Mutations mutations, RunningTest test) {
+    return SimpleInstrumentationListener.recordCoverage(mutations.ids[test.index++ & (mutations.ids.length - 1)]);
+  }
+
+}
@@ -0,0 +1,83 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hu.sed.soda.tools.ReportGeneratorMojo;
+
+/**
+ * Measures a whole run of the report goal over a synthetic corpus generated by the {@link CorpusGenerator}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+  @Param({ "100", "1000" })
+  private int tests;
+
+  @Param({ "100", "1000" })
+  private int classes;
+
+  @Param({ "1", "4" })
+  private int threads;
+
+  @Param({ "false", "true" })
+  private boolean sparse;
+
+  private File workDirectory;
+
+  @Setup
+  public void setUp() throws IOException {
+    workDirectory = Files.createTempDirectory("soda-report").toFile();
+
+    CorpusGenerator.generate(workDirectory, classes, 10, 4, tests, 20, 0.5, 42, "0");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(workDirectory);
+  }
+
+  @Benchmark
+  public void report() throws Exception {
+    ReportGeneratorMojo mojo = new ReportGeneratorMojo();
+
+    File baseDirectory = CorpusGenerator.getBaseDirectory(workDirectory);
+
+    ReflectionUtils.setVariableValueInObject(mojo, "baseDirectory", baseDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "inputDirectory", ReportCorpus.getCoverageDirectory(baseDirectory));
+    ReflectionUtils.setVariableValueInObject(mojo, "outputDirectory", new File(baseDirectory, "coverage/xml"));
+    ReflectionUtils.setVariableValueInObject(mojo, "classesDirectory", CorpusGenerator.getClassesDirectory(workDirectory));
+    ReflectionUtils.setVariableValueInObject(mojo, "sourceDirectory", workDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "revision", "0");
+    ReflectionUtils.setVariableValueInObject(mojo, "threads", threads);
+    ReflectionUtils.setVariableValueInObject(mojo, "sparse", sparse);
+    ReflectionUtils.setVariableValueInObject(mojo, "incremental", false);
+    ReflectionUtils.setVariableValueInObject(mojo, "format", "xml");
+
+    mojo.setLog(new QuietLog());
+    mojo.execute();
+  }
+
+}
@@ -0,0 +1,124 @@
+package hu.sed.soda.tools.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+
+import hu.sed.soda.tools.ClassStructure;
+import hu.sed.soda.tools.Constants;
+import hu.sed.soda.tools.StructureCache;
+
+/**
+ * Writes the coverage data of synthetic tests in the layout produced by the listeners, so the report goal can process it:
+ * <ul>
+ * <li>&lt;base&gt;/coverage/raw/&lt;hash&gt;.exec for every test,</li>
+ * <li>&lt;base&gt;/&lt;revision&gt;/HashToTest.r&lt;revision&gt; with the names of the tests.</li>
+ * </ul>
+ */
+public final class ReportCorpus {
+
+  private ReportCorpus() {
+  }
+
+  /**
+   * @param baseDirectory
+   *          The base directory of the outputs.
+   * 
+   * @return The directory of the exec files.
+   */
+  public static File getCoverageDirectory(File baseDirectory) {
+    return new File(new File(baseDirectory, "coverage"), "raw");
+  }
+
+  /**
+   * Writes random coverage data for the given classes.
+   * 
+   * @param baseDirectory
+   *          The base directory of the outputs.
+   * @param revision
+   *          The revision identifier used in the name of the map file.
+   * @param classes
+   *          The classes which can be covered by the tests.
+   * @param tests
+   *          The number of tests.
+   * @param classesPerTest
+   *          The number of classes covered by a test.
+   * @param probeDensity
+   *          The probability of a probe of a covered class being executed.
+   * @param seed
+   *          The seed of the random generator, the same seed produces the same corpus.
+   * 
+   * @throws IOException
+   */
+  public static void writeTests(File baseDirectory, String revision, StructureCache classes, int tests, int classesPerTest, double probeDensity,
+      long seed) throws IOException {
+    File coverageDirectory = getCoverageDirectory(baseDirectory);
+    File revisionDirectory = new File(baseDirectory, revision);
+
+    coverageDirectory.mkdirs();
+    revisionDirectory.mkdirs();
+
+    ClassStructure[] structures = classes.getClasses().toArray(new ClassStructure[0]);
+    int coveredClasses = Math.min(classesPerTest, structures.length);
+
+    // The order of the analyzed classes depends on the file system.
+    Arrays.sort(structures, new Comparator<ClassStructure>() {
+      @Override
+      public int compare(ClassStructure o1, ClassStructure o2) {
+        return o1.getName().compareTo(o2.getName());
+      }
+    });
+
+    Random random = new Random(seed);
+
+    File mapFile = new File(revisionDirectory, String.format("%s.r%s", Constants.MAP_FILE, revision));
+
+    try (BufferedWriter map = new BufferedWriter(new FileWriter(mapFile))) {
+      for (int test = 0; test < tests; test++) {
+        String testName = String.format("synthetic.Test%d.test%d", test / 10, test % 10);
+        String testHash = DigestUtils.md5Hex(testName);
+
+        // Moving a random sample of the classes to the front of the array.
+        for (int i = 0; i < coveredClasses; i++) {
+          int j = i + random.nextInt(structures.length - i);
+
+          ClassStructure structure = structures[i];
+          structures[i] = structures[j];
+          structures[j] = structure;
+        }
+
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(new File(coverageDirectory, testHash + '.' + Constants.COVERAGE_FILE_EXT)))) {
+          ExecutionDataWriter writer = new ExecutionDataWriter(output);
+
+          writer.visitSessionInfo(new SessionInfo(testName, test, test));
+
+          for (int i = 0; i < coveredClasses; i++) {
+            ClassStructure structure = structures[i];
+            boolean[] probes = new boolean[structure.getProbeCount()];
+
+            for (int p = 0; p < probes.length; p++) {
+              probes[p] = random.nextDouble() < probeDensity;
+            }
+
+            writer.visitClassExecution(new ExecutionData(structure.getId(), structure.getName(), probes));
+          }
+        }
+
+        map.write(String.format("%s%s%s\n", testHash, Constants.MAP_FILE_SEPARATOR, testName));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+package hu.sed.soda.tools.benchmarks.workload;
+
+/**
+ * Code under test for the benchmarks which need coverage data. Only this package is instrumented by the agent of the benchmark forks, so
+ * the harness itself is not slowed down by the probes.
+ */
+public final class Workload {
+
+  private Workload() {
+  }
+
+  /**
+   * Executes a part of the branches depending on the seed, so consecutive tests have different coverage.
+   * 
+   * @param seed
+   *          An arbitrary number.
+   * 
+   * @return A value which depends on the executed branches.
+   */
+  public static int run(int seed) {
+    int result = 0;
+
+    for (int i = 0; i < 8; i++) {
+      if ((seed & (1 << i)) != 0) {
+        result += branch(i);
+      } else {
+        result -= i;
+      }
+    }
+
+    return result;
+  }
+
+  private static int branch(int i) {
+    switch (i % 4) {
+    case 0:
+      return i * 3;
+    case 1:
+      return i + 7;
+    case 2:
+      return i << 2;
+    default:
+      return i ^ 5;
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+package hu.sed.soda.tools;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * An enumeration for storing the ways the JaCoCo agent can be reached.
+ */
+public enum AgentMode {
+
+  /**
+   * Uses the agent of the actual JVM if there is one, otherwise falls back to {@link #TCP}.
+   */
+  AUTO,
+  /**
+   * Uses the runtime API of the agent which is attached to the actual JVM.
+   */
+  LOCAL,
+  /**
+   * Connects to the TCP server of the agent, which may run in a remote JVM.
+   */
+  TCP;
+
+  private static final Logger LOGGER = Logger.getLogger(AgentMode.class.getName());
+
+  /**
+   * Reads the mode from the {@link Constants#AGENT_MODE_PROPERTY} system property.
+   * 
+   * @return The configured mode, {@link #AUTO} by default or if the configured mode is unknown.
+   */
+  public static AgentMode fromSystemProperties() {
+    String value = System.getProperty(Constants.AGENT_MODE_PROPERTY);
+
+    if (value == null) {
+      return AUTO;
+    }
+
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      LOGGER.severe(String.format("Unknown agent mode '%s', using %s instead.", value, AUTO));
+
+      return AUTO;
+    }
+  }
+
+}
@@ -0,0 +1,179 @@
+package hu.sed.soda.tools;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Stores the coverage data through another sink on a background thread, so the tests do not have to wait for the serialization and the
+ * disk I/O. The pending data is held in a bounded queue: if it is full the test thread blocks until the writer catches up. Closing the sink
+ * waits until every pending test has been written.
+ */
+public class AsyncCoverageSink implements CoverageSink {
+
+  /**
+   * Marks the end of the queue.
+   */
+  private static final Entry END = new Entry(null, null, null);
+
+  /**
+   * The sink which actually stores the data.
+   */
+  private final CoverageSink sink;
+
+  /**
+   * The data waiting to be written.
+   */
+  private final BlockingQueue<Entry> queue;
+
+  /**
+   * The hashes of the tests passed to this sink, including the ones not written yet.
+   */
+  private final Set<String> testHashes = new HashSet<String>();
+
+  private final Thread writer;
+
+  /**
+   * The first failure of the background writer.
+   */
+  private volatile IOException failure;
+
+  /**
+   * Creates a sink and starts its background writer.
+   * 
+   * @param sink
+   *          The sink which actually stores the data.
+   * @param capacity
+   *          The maximum number of tests waiting to be written.
+   */
+  public AsyncCoverageSink(CoverageSink sink, int capacity) {
+    this.sink = sink;
+    this.queue = new ArrayBlockingQueue<Entry>(capacity);
+
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeEntries();
+      }
+    }, "soda-coverage-writer");
+
+    // The listener is not always notified about the end of the run, so the writer must not keep the JVM alive.
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Writes the queued data until the end of the queue is reached.
+   */
+  private void writeEntries() {
+    while (true) {
+      Entry entry;
+
+      try {
+        entry = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (entry == END) {
+        return;
+      }
+
+      try {
+        sink.write(entry.testHash, entry.loader, entry.metrics);
+      } catch (IOException | RuntimeException e) {
+        if (failure == null) {
+          failure = new IOException(String.format("Cannot write coverage data of test with hash '%s'.", entry.testHash), e);
+        }
+
+        if (entry.metrics != null) {
+          entry.metrics.setUnsaved();
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized boolean contains(String testHash) {
+    return testHashes.contains(testHash) || sink.contains(testHash);
+  }
+
+  /**
+   * Queues the coverage data of a test, waits if the queue is full. A failure of a previous write is reported here, after the data of the
+   * actual test has been queued, so {@link #contains(String)} tells whether the actual test has been accepted.
+   */
+  @Override
+  public synchronized void write(String testHash, ExecFileLoader loader, TestMetrics metrics) throws IOException {
+    put(new Entry(testHash, loader, metrics));
+
+    testHashes.add(testHash);
+
+    checkFailure();
+  }
+
+  private void put(Entry entry) throws InterruptedIOException {
+    try {
+      queue.put(entry);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new InterruptedIOException("Interrupted while waiting for the coverage writer.");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    IOException e = failure;
+
+    if (e != null) {
+      failure = null;
+
+      throw e;
+    }
+  }
+
+  /**
+   * Waits until the pending data has been written, then closes the underlying sink. If the wait is interrupted the underlying sink is left
+   * open, since the writer may still be using it.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    put(END);
+
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new InterruptedIOException("Interrupted while waiting for the coverage writer.");
+    }
+
+    sink.close();
+
+    checkFailure();
+  }
+
+  /**
+   * The coverage data of a test waiting to be written.
+   */
+  private static class Entry {
+
+    private final String testHash;
+
+    private final ExecFileLoader loader;
+
+    private final TestMetrics metrics;
+
+    Entry(String testHash, ExecFileLoader loader, TestMetrics metrics) {
+      this.testHash = testHash;
+      this.loader = loader;
+      this.metrics = metrics;
+    }
+
+  }
+
+}
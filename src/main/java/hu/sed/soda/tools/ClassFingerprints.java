@@ -0,0 +1,192 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceMethodVisitor;
+
+/**
+ * Fingerprints of the classes and methods of a project, which tell whether their behavior may have changed between two revisions.
+ *
+ * The fingerprints are keyed by the element names of the {@link CoverageIndexReader coverage index}. The fingerprint of a class covers its
+ * header (super class, interfaces, modifiers) and its fields, the fingerprint of a method covers its instructions. Debug information (line
+ * numbers, local variable names, source file) is left out, so moving code or editing comments does not change the fingerprints.
+ */
+public final class ClassFingerprints {
+
+  private ClassFingerprints() {
+  }
+
+  /**
+   * Computes the fingerprints of the classes of a directory, a jar file or a class file.
+   *
+   * @param file
+   *          The file or directory to analyze.
+   *
+   * @return The fingerprints keyed by the names of the elements.
+   *
+   * @throws IOException
+   */
+  public static Map<String, String> compute(File file) throws IOException {
+    final Map<String, String> fingerprints = new TreeMap<String, String>();
+
+    // The analyzer is only used to walk the directories and archives.
+    Analyzer analyzer = new Analyzer(new ExecutionDataStore(), null) {
+      @Override
+      public void analyzeClass(ClassReader reader) {
+        // Debug information is skipped, so it does not affect the fingerprints.
+        reader.accept(new FingerprintVisitor(fingerprints), ClassReader.SKIP_DEBUG);
+      }
+    };
+
+    analyzer.analyzeAll(file);
+
+    return fingerprints;
+  }
+
+  /**
+   * Writes the fingerprints as lines of element names and fingerprints separated by {@link Constants#FINGERPRINTS_FILE_SEPARATOR}.
+   *
+   * @param file
+   *          The output file.
+   * @param fingerprints
+   *          The fingerprints keyed by the names of the elements.
+   *
+   * @throws IOException
+   */
+  public static void write(File file, Map<String, String> fingerprints) throws IOException {
+    try (BufferedWriter output = new BufferedWriter(new FileWriter(file))) {
+      for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+        output.write(String.format("%s%s%s\n", entry.getKey(), Constants.FINGERPRINTS_FILE_SEPARATOR, entry.getValue()));
+      }
+    }
+  }
+
+  /**
+   * Reads the fingerprints written by {@link #write(File, Map)}.
+   *
+   * @param file
+   *          The input file.
+   *
+   * @return The fingerprints keyed by the names of the elements.
+   *
+   * @throws IOException
+   *           If the file cannot be read or it has a malformed line.
+   */
+  public static Map<String, String> read(File file) throws IOException {
+    Map<String, String> fingerprints = new TreeMap<String, String>();
+
+    try (BufferedReader input = new BufferedReader(new FileReader(file))) {
+      String line = null;
+      int lineNumber = 0;
+
+      while ((line = input.readLine()) != null) {
+        lineNumber++;
+
+        String[] tokens = line.split(Constants.FINGERPRINTS_FILE_SEPARATOR);
+
+        if (tokens.length != 2 || tokens[0].isEmpty() || tokens[1].isEmpty()) {
+          throw new IOException(String.format("Malformed line %d in fingerprints file '%s'.", lineNumber, file.getPath()));
+        }
+
+        fingerprints.put(tokens[0], tokens[1]);
+      }
+    }
+
+    return fingerprints;
+  }
+
+  /**
+   * @param elementName
+   *          The name of a class or a method element.
+   *
+   * @return The name of the class of the element.
+   */
+  public static String getClassName(String elementName) {
+    int index = elementName.indexOf('#');
+
+    return index < 0 ? elementName : elementName.substring(0, index);
+  }
+
+  /**
+   * Collects the fingerprints of a class and its methods.
+   */
+  private static class FingerprintVisitor extends ClassVisitor {
+
+    private final Map<String, String> fingerprints;
+
+    private String className;
+
+    private final StringBuilder header = new StringBuilder();
+
+    FingerprintVisitor(Map<String, String> fingerprints) {
+      super(Opcodes.ASM5);
+
+      this.fingerprints = fingerprints;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+      className = name;
+
+      header.append(access).append(' ').append(name).append(' ').append(signature).append(' ').append(superName).append(' ').append(Arrays.toString(interfaces)).append('\n');
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+      header.append(access).append(' ').append(name).append(' ').append(desc).append(' ').append(signature).append(' ').append(value).append('\n');
+
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, final String name, final String desc, String signature, String[] exceptions) {
+      final Textifier textifier = new Textifier();
+
+      textifier.getText().add(String.format("%d %s %s %s %s\n", access, name, desc, signature, Arrays.toString(exceptions)));
+
+      return new MethodVisitor(Opcodes.ASM5, new TraceMethodVisitor(textifier)) {
+        @Override
+        public void visitEnd() {
+          super.visitEnd();
+
+          StringWriter text = new StringWriter();
+
+          textifier.print(new PrintWriter(text));
+
+          fingerprints.put(CoverageIndexReader.getMethodElement(className, name, desc), digest(text.toString()));
+        }
+      };
+    }
+
+    @Override
+    public void visitEnd() {
+      fingerprints.put(className, digest(header.toString()));
+    }
+
+    private static String digest(String text) {
+      return DigestUtils.md5Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+  }
+
+}
@@ -0,0 +1,253 @@
+package hu.sed.soda.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+
+/**
+ * The coverage independent structure of a class which is identified by its JaCoCo class id.
+ */
+public class ClassStructure {
+
+  /**
+   * The JaCoCo identifier (CRC64 checksum) of the class.
+   */
+  private final long id;
+
+  /**
+   * The VM name of the class.
+   */
+  private final String name;
+
+  private final String signature;
+
+  private final String superName;
+
+  private final String[] interfaces;
+
+  /**
+   * The name of the source file of the class, may be null.
+   */
+  private String sourceFileName;
+
+  /**
+   * The number of probes of the class.
+   */
+  private int probeCount;
+
+  /**
+   * The structures of the methods of the class.
+   */
+  private final List<MethodStructure> methods;
+
+  /**
+   * Creates a class structure.
+   *
+   * @param id
+   *          The JaCoCo identifier of the class.
+   * @param name
+   *          The VM name of the class.
+   * @param signature
+   *          The generic signature of the class.
+   * @param superName
+   *          The VM name of the super class.
+   * @param interfaces
+   *          The VM names of the implemented interfaces.
+   * @param methods
+   *          The list which holds the structures of the methods.
+   */
+  public ClassStructure(long id, String name, String signature, String superName, String[] interfaces, List<MethodStructure> methods) {
+    this.id = id;
+    this.name = name;
+    this.signature = signature;
+    this.superName = superName;
+    this.interfaces = interfaces;
+    this.methods = methods;
+  }
+
+  /**
+   * Reads a class structure written by {@link #write(DataOutputStream)}.
+   *
+   * @param input
+   *          The input stream.
+   *
+   * @return The class structure.
+   *
+   * @throws IOException
+   */
+  static ClassStructure read(DataInputStream input) throws IOException {
+    long id = input.readLong();
+    String name = IOUtils.readString(input);
+    String signature = IOUtils.readString(input);
+    String superName = IOUtils.readString(input);
+
+    int interfaceCount = IOUtils.readCount(input, 4);
+    String[] interfaces = interfaceCount < 0 ? null : new String[interfaceCount];
+
+    for (int i = 0; i < interfaceCount; i++) {
+      interfaces[i] = IOUtils.readString(input);
+    }
+
+    String sourceFileName = IOUtils.readString(input);
+    int probeCount = input.readInt();
+
+    int methodCount = IOUtils.readCount(input, 4);
+    List<MethodStructure> methods = new ArrayList<MethodStructure>(methodCount);
+
+    for (int i = 0; i < methodCount; i++) {
+      methods.add(MethodStructure.read(input));
+    }
+
+    ClassStructure structure = new ClassStructure(id, name, signature, superName, interfaces, methods);
+
+    structure.setSourceFileName(sourceFileName);
+    structure.setProbeCount(probeCount);
+
+    return structure;
+  }
+
+  /**
+   * Writes the class structure together with the structures of its methods.
+   *
+   * @param output
+   *          The output stream.
+   *
+   * @throws IOException
+   */
+  void write(DataOutputStream output) throws IOException {
+    output.writeLong(id);
+    IOUtils.writeString(output, name);
+    IOUtils.writeString(output, signature);
+    IOUtils.writeString(output, superName);
+
+    output.writeInt(interfaces == null ? -1 : interfaces.length);
+
+    if (interfaces != null) {
+      for (String value : interfaces) {
+        IOUtils.writeString(output, value);
+      }
+    }
+
+    IOUtils.writeString(output, sourceFileName);
+    output.writeInt(probeCount);
+
+    output.writeInt(methods.size());
+
+    for (MethodStructure method : methods) {
+      method.write(output);
+    }
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getSignature() {
+    return signature;
+  }
+
+  public String getSuperName() {
+    return superName;
+  }
+
+  public String[] getInterfaces() {
+    return interfaces;
+  }
+
+  public String getSourceFileName() {
+    return sourceFileName;
+  }
+
+  public void setSourceFileName(String sourceFileName) {
+    this.sourceFileName = sourceFileName;
+  }
+
+  public int getProbeCount() {
+    return probeCount;
+  }
+
+  public void setProbeCount(int probeCount) {
+    this.probeCount = probeCount;
+  }
+
+  public List<MethodStructure> getMethods() {
+    return Collections.unmodifiableList(methods);
+  }
+
+  /**
+   * @return The distinct source lines of the methods in ascending order, empty if there is no debug information.
+   */
+  public int[] getLines() {
+    int[] lines = new int[0];
+
+    for (MethodStructure method : methods) {
+      lines = union(lines, method.getLines());
+    }
+
+    return lines;
+  }
+
+  /**
+   * @return The union of two sorted arrays without duplicates.
+   */
+  private static int[] union(int[] a, int[] b) {
+    int[] result = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+
+    while (i < a.length || j < b.length) {
+      int value;
+
+      if (j == b.length || (i < a.length && a[i] <= b[j])) {
+        value = a[i++];
+      } else {
+        value = b[j++];
+      }
+
+      if (k == 0 || result[k - 1] != value) {
+        result[k++] = value;
+      }
+    }
+
+    return Arrays.copyOf(result, k);
+  }
+
+  /**
+   * Creates the coverage node of the class for the given probes in the same way as JaCoCo's analyzer does.
+   *
+   * @param probes
+   *          The probe array of the class, null if the class was not executed.
+   * @param noMatch
+   *          Whether execution data exists for a different version of the class.
+   *
+   * @return The coverage of the class.
+   */
+  public ClassCoverageImpl createCoverage(boolean[] probes, boolean noMatch) {
+    ClassCoverageImpl coverage = new ClassCoverageImpl(name, id, noMatch, signature, superName, interfaces);
+
+    coverage.setSourceFileName(sourceFileName);
+
+    for (MethodStructure method : methods) {
+      IMethodCoverage methodCoverage = method.createCoverage(probes);
+
+      if (methodCoverage.getInstructionCounter().getTotalCount() > 0) {
+        coverage.addMethod(methodCoverage);
+      }
+    }
+
+    return coverage;
+  }
+
+}
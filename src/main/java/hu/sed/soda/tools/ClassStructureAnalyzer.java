@@ -0,0 +1,83 @@
+package hu.sed.soda.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Records the {@link ClassStructure structure} of a class. Has to be wrapped into a {@link org.jacoco.core.internal.flow.ClassProbesAdapter}
+ * so that the probes are assigned in the same way as they are by the JaCoCo agent.
+ */
+public class ClassStructureAnalyzer extends ClassProbesVisitor {
+
+  /**
+   * The JaCoCo identifier of the analyzed class.
+   */
+  private final long classId;
+
+  private final List<MethodStructure> methods = new ArrayList<MethodStructure>();
+
+  private ClassStructure structure;
+
+  /**
+   * Creates a class structure analyzer.
+   *
+   * @param classId
+   *          The JaCoCo identifier of the class.
+   */
+  public ClassStructureAnalyzer(long classId) {
+    this.classId = classId;
+  }
+
+  /**
+   * @return The recorded structure, available after the class has been visited.
+   */
+  public ClassStructure getStructure() {
+    return structure;
+  }
+
+  @Override
+  public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+    structure = new ClassStructure(classId, name, signature, superName, interfaces, methods);
+  }
+
+  @Override
+  public void visitSource(String source, String debug) {
+    structure.setSourceFileName(source);
+  }
+
+  @Override
+  public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+    InstrSupport.assertNotInstrumented(name, structure.getName());
+
+    // Synthetic methods are not reported by JaCoCo except the bodies of lambda expressions.
+    if ((access & Opcodes.ACC_SYNTHETIC) != 0 && !name.startsWith("lambda$")) {
+      return null;
+    }
+
+    return new MethodStructureAnalyzer(name, desc, signature) {
+      @Override
+      protected void visitStructure(MethodStructure method) {
+        methods.add(method);
+      }
+    };
+  }
+
+  @Override
+  public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+    InstrSupport.assertNotInstrumented(name, structure.getName());
+
+    return super.visitField(access, name, desc, signature, value);
+  }
+
+  @Override
+  public void visitTotalProbeCount(int count) {
+    structure.setProbeCount(count);
+  }
+
+}
@@ -0,0 +1,216 @@
+package hu.sed.soda.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes sorted sets of non-negative integers (e.g. test ids) in the smaller of two forms:
+ * <ul>
+ * <li>an array of the gaps between the consecutive values as variable length integers, for sparse sets,</li>
+ * <li>a bitset of 64 bit words, for dense sets.</li>
+ * </ul>
+ * Both forms start with the kind byte, which is followed by the number of values (or words) as a variable length integer.
+ */
+public final class CompressedBitmap {
+
+  static final byte KIND_ARRAY = 0x01;
+
+  static final byte KIND_BITSET = 0x02;
+
+  private CompressedBitmap() {
+  }
+
+  /**
+   * Encodes a set.
+   *
+   * @param values
+   *          The values in ascending order, without duplicates.
+   * @param count
+   *          The number of values used from the array.
+   *
+   * @return The encoded set.
+   */
+  public static byte[] encode(int[] values, int count) {
+    ByteArrayOutputStream array = new ByteArrayOutputStream();
+
+    array.write(KIND_ARRAY);
+    writeVarInt(array, count);
+
+    int previous = -1;
+
+    for (int i = 0; i < count; i++) {
+      writeVarInt(array, values[i] - previous - 1);
+
+      previous = values[i];
+    }
+
+    int wordCount = count == 0 ? 0 : (values[count - 1] >>> 6) + 1;
+
+    // The bitset needs the kind byte, at most 5 bytes for the word count and the words.
+    if (array.size() <= 6 + 8L * wordCount) {
+      return array.toByteArray();
+    }
+
+    long[] words = new long[wordCount];
+
+    for (int i = 0; i < count; i++) {
+      words[values[i] >>> 6] |= 1L << values[i];
+    }
+
+    ByteArrayOutputStream bitset = new ByteArrayOutputStream(6 + 8 * wordCount);
+
+    bitset.write(KIND_BITSET);
+    writeVarInt(bitset, wordCount);
+
+    for (long word : words) {
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bitset.write((int) (word >>> shift));
+      }
+    }
+
+    return bitset.toByteArray();
+  }
+
+  /**
+   * Decodes a set into its values.
+   *
+   * @param input
+   *          The buffer positioned at the start of the encoded set. The position is moved after it.
+   *
+   * @return The values in ascending order.
+   */
+  public static int[] decodeValues(ByteBuffer input) {
+    byte kind = input.get();
+    int count = readVarInt(input);
+
+    if (kind == KIND_ARRAY) {
+      int[] values = new int[count];
+      int previous = -1;
+
+      for (int i = 0; i < count; i++) {
+        values[i] = previous + readVarInt(input) + 1;
+
+        previous = values[i];
+      }
+
+      return values;
+    }
+
+    int[] values = new int[64];
+    int size = 0;
+
+    for (int i = 0; i < count; i++) {
+      long word = input.getLong();
+
+      while (word != 0) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, 2 * size);
+        }
+
+        values[size++] = (i << 6) + Long.numberOfTrailingZeros(word);
+
+        word &= word - 1;
+      }
+    }
+
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Decodes a set into a bitset, value i is stored in bit (i % 64) of word (i / 64).
+   *
+   * @param input
+   *          The buffer positioned at the start of the encoded set. The position is moved after it.
+   * @param wordCount
+   *          The number of words of the result, it must be large enough to hold the largest value.
+   *
+   * @return The bitset.
+   */
+  public static long[] decodeWords(ByteBuffer input, int wordCount) {
+    long[] words = new long[wordCount];
+
+    byte kind = input.get();
+    int count = readVarInt(input);
+
+    if (kind == KIND_ARRAY) {
+      int value = -1;
+
+      for (int i = 0; i < count; i++) {
+        value += readVarInt(input) + 1;
+
+        words[value >>> 6] |= 1L << value;
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        words[i] = input.getLong();
+      }
+    }
+
+    return words;
+  }
+
+  /**
+   * Counts the values of a set which are also in a bitset, without decoding the set.
+   *
+   * @param input
+   *          The buffer positioned at the start of the encoded set. The position is moved after it.
+   * @param mask
+   *          The bitset, value i is stored in bit (i % 64) of word (i / 64).
+   *
+   * @return The size of the intersection.
+   */
+  public static int countIntersection(ByteBuffer input, long[] mask) {
+    byte kind = input.get();
+    int count = readVarInt(input);
+
+    int result = 0;
+
+    if (kind == KIND_ARRAY) {
+      int value = -1;
+
+      for (int i = 0; i < count; i++) {
+        value += readVarInt(input) + 1;
+
+        if ((value >>> 6) < mask.length && (mask[value >>> 6] & (1L << value)) != 0) {
+          result++;
+        }
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        long word = input.getLong();
+
+        if (i < mask.length) {
+          result += Long.bitCount(word & mask[i]);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  private static void writeVarInt(ByteArrayOutputStream output, int value) {
+    while ((value & ~0x7f) != 0) {
+      output.write((value & 0x7f) | 0x80);
+
+      value >>>= 7;
+    }
+
+    output.write(value);
+  }
+
+  private static int readVarInt(ByteBuffer input) {
+    int value = 0;
+
+    for (int shift = 0;; shift += 7) {
+      byte b = input.get();
+
+      value |= (b & 0x7f) << shift;
+
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+}
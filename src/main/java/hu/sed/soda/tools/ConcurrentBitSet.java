@@ -0,0 +1,129 @@
+package hu.sed.soda.tools;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A growable bitset which can be updated by several threads without locking. The bits are stored in fixed size pages, which are never
+ * copied, so a bit set concurrently with the growth of the page directory cannot be lost. Setting a bit which is already set does not write
+ * to the shared memory at all.
+ */
+public class ConcurrentBitSet {
+
+  /**
+   * The number of words in a page.
+   */
+  private static final int PAGE_WORDS = 1024;
+
+  /**
+   * The number of bits in a page as a power of two.
+   */
+  private static final int PAGE_SHIFT = 16;
+
+  /**
+   * The page directory, it is only replaced while holding the lock of the bitset.
+   */
+  private volatile AtomicLongArray[] pages = new AtomicLongArray[1];
+
+  /**
+   * Sets a bit.
+   * 
+   * @param bit
+   *          The non-negative index of the bit.
+   */
+  public void set(int bit) {
+    AtomicLongArray page = getPage(bit >>> PAGE_SHIFT);
+
+    int word = (bit >>> 6) & (PAGE_WORDS - 1);
+    long mask = 1L << bit;
+    long value = page.get(word);
+
+    while ((value & mask) == 0 && !page.compareAndSet(word, value, value | mask)) {
+      value = page.get(word);
+    }
+  }
+
+  /**
+   * @param bit
+   *          The non-negative index of the bit.
+   * 
+   * @return True if the bit is set.
+   */
+  public boolean get(int bit) {
+    AtomicLongArray[] directory = pages;
+    int index = bit >>> PAGE_SHIFT;
+
+    if (index >= directory.length || directory[index] == null) {
+      return false;
+    }
+
+    return (directory[index].get((bit >>> 6) & (PAGE_WORDS - 1)) & (1L << bit)) != 0;
+  }
+
+  private AtomicLongArray getPage(int index) {
+    AtomicLongArray[] directory = pages;
+
+    if (index < directory.length && directory[index] != null) {
+      return directory[index];
+    }
+
+    return createPage(index);
+  }
+
+  private synchronized AtomicLongArray createPage(int index) {
+    AtomicLongArray[] directory = pages;
+
+    if (index >= directory.length) {
+      AtomicLongArray[] newDirectory = new AtomicLongArray[Math.max(index + 1, 2 * directory.length)];
+
+      System.arraycopy(directory, 0, newDirectory, 0, directory.length);
+
+      directory = newDirectory;
+    }
+
+    if (directory[index] == null) {
+      directory[index] = new AtomicLongArray(PAGE_WORDS);
+    }
+
+    // Publishing the directory again makes the new page visible to the threads which do not take the lock.
+    pages = directory;
+
+    return directory[index];
+  }
+
+  /**
+   * @return The indexes of the set bits in increasing order.
+   */
+  public int[] toArray() {
+    AtomicLongArray[] directory = pages;
+
+    int count = 0;
+
+    for (AtomicLongArray page : directory) {
+      if (page != null) {
+        for (int i = 0; i < PAGE_WORDS; i++) {
+          count += Long.bitCount(page.get(i));
+        }
+      }
+    }
+
+    int[] bits = new int[count];
+    int k = 0;
+
+    for (int p = 0; p < directory.length && k < count; p++) {
+      if (directory[p] != null) {
+        for (int i = 0; i < PAGE_WORDS && k < count; i++) {
+          long word = directory[p].get(i);
+
+          while (word != 0 && k < count) {
+            bits[k++] = (p << PAGE_SHIFT) + (i << 6) + Long.numberOfTrailingZeros(word);
+
+            word &= word - 1;
+          }
+        }
+      }
+    }
+
+    return bits;
+  }
+
+}
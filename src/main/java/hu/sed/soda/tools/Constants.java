@@ -1,8 +1,5 @@
 package hu.sed.soda.tools;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 public interface Constants {
 
   /**
@@ -15,28 +12,175 @@ public interface Constants {
    */
   static final int JACOCO_AGENT_PORT = 9999;
 
+  /**
+   * The system property which overrides the address of the JaCoCo agent.
+   */
+  static final String AGENT_ADDRESS_PROPERTY = "soda.agent.address";
+
+  /**
+   * The system property which overrides the port of the JaCoCo agent, e.g. to give every fork its own agent.
+   */
+  static final String AGENT_PORT_PROPERTY = "soda.agent.port";
+
+  /**
+   * The system property which selects how the JaCoCo agent is reached, see {@link AgentMode}.
+   */
+  static final String AGENT_MODE_PROPERTY = "soda.agent.mode";
+
+  /**
+   * The system property which sets the timeout of connecting to the JaCoCo agent in milliseconds.
+   */
+  static final String AGENT_CONNECT_TIMEOUT_PROPERTY = "soda.agent.connectTimeout";
+
+  /**
+   * The default timeout of connecting to the JaCoCo agent in milliseconds.
+   */
+  static final int AGENT_CONNECT_TIMEOUT = 10000;
+
+  /**
+   * The system property which sets the timeout of waiting for the response of the JaCoCo agent in milliseconds.
+   */
+  static final String AGENT_READ_TIMEOUT_PROPERTY = "soda.agent.readTimeout";
+
+  /**
+   * The default timeout of waiting for the response of the JaCoCo agent in milliseconds.
+   */
+  static final int AGENT_READ_TIMEOUT = 60000;
+
+  /**
+   * The system property which controls whether the reset at the start of a test is folded into the dump and reset at the end of the previous
+   * test. Enabled by default, in which case the code executed between two tests (e.g. class level fixtures) is attributed to the next test.
+   */
+  static final String AGENT_PIPELINE_PROPERTY = "soda.agent.pipeline";
+
   /**
    * The extension of coverage files produced by EMMA.
    */
   static final String COVERAGE_FILE_EXT = "exec";
 
+  /**
+   * The system property which selects how the coverage data of the tests is stored, see {@link OutputMode}.
+   */
+  static final String OUTPUT_MODE_PROPERTY = "soda.output";
+
+  /**
+   * The extension of coverage matrix containers.
+   */
+  static final String MATRIX_FILE_EXT = "matrix";
+
+  /**
+   * The name of the coverage matrix container in the coverage directory without the extension. Every fork has its own container.
+   */
+  static final String MATRIX_FILE = "coverage";
+
+  /**
+   * The system property which sets how many tests may wait for their coverage data to be written in the background. Zero means the data
+   * is written synchronously on the test thread.
+   */
+  static final String WRITE_QUEUE_PROPERTY = "soda.writeQueue";
+
+  /**
+   * The system property which selects the output of the {@link SimpleInstrumentationListener}: csv (the default), matrix or both.
+   */
+  static final String MUTATION_OUTPUT_PROPERTY = "soda.mutationOutput";
+
+  /**
+   * The default number of tests which may wait for their coverage data to be written.
+   */
+  static final int WRITE_QUEUE_SIZE = 16;
+
+  /**
+   * The system property which sets after how many tests the buffered results are flushed to the result files.
+   */
+  static final String RESULTS_FLUSH_PROPERTY = "soda.resultsFlushInterval";
+
+  /**
+   * The default number of tests after which the results are flushed.
+   */
+  static final int RESULTS_FLUSH_INTERVAL = 32;
+
   /**
    * The default directory.
    */
   static final String BASE_DIR = "./target/jacoco";
 
   /**
-   * The directory for coverage data.
+   * The system property which overrides the default directory in the test JVM.
+   */
+  static final String BASE_DIR_PROPERTY = "soda.baseDirectory";
+
+  /**
+   * The system property which sets the revision identifier of the program under test in the test JVM.
+   */
+  static final String REVISION_PROPERTY = "soda.revision";
+
+  /**
+   * The system property which sets the id of the actual fork. If it is set the listeners write fork-sharded output files.
    */
-  static final Path COVERAGE_DIR = Paths.get(BASE_DIR, "coverage", "raw");
+  static final String FORK_PROPERTY = "soda.fork";
+
+  /**
+   * Separates the name of a shared file and the fork id in the name of its shards.
+   */
+  static final String SHARD_SEPARATOR = ".f";
+
+  /**
+   * The name of the file which stores the outcomes of the tests.
+   */
+  static final String RESULTS_FILE = "TestResults";
+
+  /**
+   * The name of the file which stores the durations and the coverage collection overhead of the tests.
+   */
+  static final String METRICS_FILE = "TestMetrics";
 
   /**
    * The name of the file which stores the hash to test name mapping.
    */
   static final String MAP_FILE = "HashToTest";
 
+  /**
+   * The name of the file in the base directory which records the inputs of the generated reports.
+   */
+  static final String MANIFEST_FILE = "ReportManifest";
+
+  /**
+   * The name of the file which stores the fingerprints of the classes and methods of a revision.
+   */
+  static final String FINGERPRINTS_FILE = "Fingerprints";
+
+  /**
+   * The name of the file which stores the fingerprints of the test classes and their methods of a revision.
+   */
+  static final String TEST_FINGERPRINTS_FILE = "TestFingerprints";
+
+  /**
+   * The name of the file in the base directory which caches the structures of the analyzed classes.
+   */
+  static final String STRUCTURE_CACHE_FILE = "StructureCache";
+
   /**
    * Separator string for hash to test name map file.
    */
   static final String MAP_FILE_SEPARATOR = "\t";
+
+  /**
+   * Separator string for the columns of the test metrics file.
+   */
+  static final String METRICS_FILE_SEPARATOR = "\t";
+
+  /**
+   * Separator string for the element names and the fingerprints of the fingerprints files.
+   */
+  static final String FINGERPRINTS_FILE_SEPARATOR = "\t";
+
+  /**
+   * Separator string for the tests of a group in the redundant groups file of the minimization.
+   */
+  static final String GROUPS_FILE_SEPARATOR = "\t";
+
+  /**
+   * Separator string for the report names and the digests of the report manifest file.
+   */
+  static final String MANIFEST_FILE_SEPARATOR = "\t";
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Common interface for the different ways of collecting execution data from the JaCoCo agent.
+ */
+public interface CoverageDumper extends Closeable {
+
+  /**
+   * Resets the execution data of the agent.
+   * 
+   * @throws IOException
+   */
+  public void reset() throws IOException;
+
+  /**
+   * Collects then resets the execution data of the agent.
+   * 
+   * @return An {@link ExecFileLoader} that holds the collected data.
+   * 
+   * @throws IOException
+   */
+  public ExecFileLoader dumpAndReset() throws IOException;
+
+}
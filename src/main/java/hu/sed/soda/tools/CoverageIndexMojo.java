@@ -0,0 +1,252 @@
+package hu.sed.soda.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.jacoco.core.data.ExecutionData;
+
+/**
+ * Builds the inverted coverage index, which answers which tests cover a class, a method or a line without reading the per-test reports.
+ * The index can be queried through the {@link CoverageIndexReader}, also from the command line.
+ *
+ * The tests are split into contiguous ranges which are processed by a pool of {@link #threads} workers. Every worker collects the ids of
+ * the tests covering each element in its range, the lists of the ranges are concatenated in order, so the result does not depend on the
+ * scheduling of the workers.
+ */
+@Mojo(name = "index")
+public class CoverageIndexMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/coverage/raw")
+  private File inputDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/classes")
+  private File classesDirectory;
+
+  /**
+   * The index file.
+   */
+  @Parameter(property = "soda.index", defaultValue = "${project.build.directory}/jacoco/coverage/coverage.index")
+  private File indexFile;
+
+  /**
+   * The revision identifier of the actual program under test.
+   */
+  @Parameter(property = "soda.revision", defaultValue = "0")
+  private String revision;
+
+  /**
+   * The number of worker threads. Non-positive values mean the number of available processors.
+   */
+  @Parameter(property = "soda.threads", defaultValue = "0")
+  private int threads;
+
+  private StructureCache structureCache;
+
+  private ElementTable elementTable;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    try {
+      Map<String, String> hashToTestMap = ResultFiles.readHashToTestMap(baseDirectory, revision);
+
+      structureCache = StructureCache.analyze(classesDirectory, new File(baseDirectory, Constants.STRUCTURE_CACHE_FILE));
+
+      elementTable = new ElementTable(structureCache, true, true, true);
+
+      getLog().debug("elements = " + elementTable.size());
+
+      try (CoverageInput coverageInput = CoverageInput.open(inputDirectory)) {
+        int numOfTests = coverageInput.size();
+
+        List<String> testHashes = new ArrayList<String>(numOfTests);
+        List<String> testNames = new ArrayList<String>(numOfTests);
+
+        for (int i = 0; i < numOfTests; i++) {
+          String testHash = coverageInput.getHash(i);
+          String testName = hashToTestMap.get(testHash);
+
+          testHashes.add(testHash);
+          testNames.add(testName == null ? "" : testName);
+        }
+
+        List<byte[]> testSets = collectTestSets(coverageInput);
+
+        indexFile.getParentFile().mkdirs();
+
+        CoverageIndexWriter.write(indexFile, revision, testHashes, testNames, elementTable.getElementNames(), testSets);
+
+        getLog().info(String.format("Indexed %d elements covered by %d tests into %s (%d bytes).", elementTable.size(), numOfTests, indexFile, indexFile.length()));
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot build the coverage index.", e);
+    }
+  }
+
+  /**
+   * Collects the tests covering each element.
+   *
+   * @param coverageInput
+   *          The coverage data of the tests.
+   *
+   * @return The encoded test sets of the elements.
+   *
+   * @throws IOException
+   */
+  private List<byte[]> collectTestSets(final CoverageInput coverageInput) throws IOException {
+    final int numOfTests = coverageInput.size();
+    final int numOfThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    final int rangeSize = Math.max(1, (numOfTests + numOfThreads - 1) / numOfThreads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+
+    List<IntList[]> ranges = new ArrayList<IntList[]>();
+
+    try {
+      List<Future<IntList[]>> futures = new ArrayList<Future<IntList[]>>();
+
+      for (int start = 0; start < numOfTests; start += rangeSize) {
+        final int first = start;
+        final int last = Math.min(numOfTests, start + rangeSize);
+
+        futures.add(executor.submit(new Callable<IntList[]>() {
+          @Override
+          public IntList[] call() throws Exception {
+            return collectTestSets(coverageInput, first, last);
+          }
+        }));
+      }
+
+      for (Future<IntList[]> future : futures) {
+        ranges.add(IOUtils.waitFor(future, "Index generation"));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<byte[]> testSets = new ArrayList<byte[]>(elementTable.size());
+    IntList merged = new IntList();
+
+    for (int element = 0; element < elementTable.size(); element++) {
+      merged.size = 0;
+
+      for (IntList[] range : ranges) {
+        if (range[element] != null) {
+          merged.addAll(range[element]);
+        }
+      }
+
+      testSets.add(CompressedBitmap.encode(merged.values, merged.size));
+    }
+
+    return testSets;
+  }
+
+  /**
+   * Collects the tests covering each element from a range of tests.
+   *
+   * @return The ids of the tests in ascending order for each element, null for the elements not covered by the range.
+   *
+   * @throws IOException
+   */
+  private IntList[] collectTestSets(CoverageInput coverageInput, int first, int last) throws IOException {
+    IntList[] testSets = new IntList[elementTable.size()];
+
+    for (int test = first; test < last; test++) {
+      for (ExecutionData data : coverageInput.load(test).getExecutionDataStore().getContents()) {
+        ClassStructure structure = structureCache.getClass(data.getId());
+
+        if (structure == null) {
+          continue;
+        }
+
+        ElementTable.ClassElements elements = elementTable.getClassElements(data.getId());
+        List<MethodStructure> methods = structure.getMethods();
+        boolean[] probes = data.getProbes();
+        boolean covered = false;
+
+        for (int i = 0; i < methods.size(); i++) {
+          MethodStructure method = methods.get(i);
+
+          if (!method.isCovered(probes)) {
+            continue;
+          }
+
+          covered = true;
+
+          add(testSets, elements.getMethodElement(i), test);
+
+          for (int line : method.getCoveredLines(probes)) {
+            add(testSets, elements.getLineElement(line), test);
+          }
+        }
+
+        if (covered) {
+          add(testSets, elements.getClassElement(), test);
+        }
+      }
+    }
+
+    return testSets;
+  }
+
+  private static void add(IntList[] testSets, int element, int test) {
+    if (testSets[element] == null) {
+      testSets[element] = new IntList();
+    }
+
+    testSets[element].addDistinct(test);
+  }
+
+  /**
+   * A growable list of test ids.
+   */
+  private static class IntList {
+
+    private int[] values = new int[4];
+
+    private int size;
+
+    /**
+     * Appends a value unless it equals the last one.
+     */
+    void addDistinct(int value) {
+      if (size > 0 && values[size - 1] == value) {
+        return;
+      }
+
+      if (size == values.length) {
+        values = Arrays.copyOf(values, 2 * size);
+      }
+
+      values[size++] = value;
+    }
+
+    void addAll(IntList other) {
+      if (size + other.size > values.length) {
+        values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+      }
+
+      System.arraycopy(other.values, 0, values, size, other.size);
+
+      size += other.size;
+    }
+
+  }
+
+}
@@ -0,0 +1,253 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the inverted coverage index written by the {@link CoverageIndexWriter}. The tables are loaded when the index is opened, the test
+ * sets are decoded on demand from the memory-mapped file, so a lookup costs a hash lookup and the decoding of a single set.
+ *
+ * The elements are named as follows:
+ * <ul>
+ * <li>class: the VM name of the class, e.g. org/example/Foo,</li>
+ * <li>method: the class, '#', the name and the descriptor of the method, e.g. org/example/Foo#bar(I)V,</li>
+ * <li>line: the class, ':' and the line number, e.g. org/example/Foo:42.</li>
+ * </ul>
+ *
+ * The reader is immutable after it has been opened, so it can be shared between threads.
+ */
+public class CoverageIndexReader implements Closeable {
+
+  /**
+   * The memory-mapped content of the file.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The revision the coverage of the index has been collected from.
+   */
+  private final String revision;
+
+  private final String[] testHashes;
+
+  private final String[] testNames;
+
+  private final String[] elementNames;
+
+  private final int[] elementOffsets;
+
+  private final Map<String, Integer> elementIndexes;
+
+  /**
+   * The offset of the first test set.
+   */
+  private final int testSetsStart;
+
+  /**
+   * Opens an index.
+   *
+   * @param file
+   *          The index file.
+   *
+   * @throws IOException
+   */
+  public CoverageIndexReader(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(String.format("Coverage index '%s' is larger than 2GB.", file.getPath()));
+      }
+
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+    }
+
+    if (buffer.limit() < 6 || buffer.getInt() != CoverageIndexWriter.MAGIC) {
+      throw new IOException(String.format("File '%s' is not a coverage index.", file.getPath()));
+    }
+
+    short version = buffer.getShort();
+
+    if (version != CoverageIndexWriter.VERSION) {
+      throw new IOException(String.format("Unsupported coverage index version %d in '%s'.", version, file.getPath()));
+    }
+
+    revision = IOUtils.readString(buffer);
+
+    int testCount = buffer.getInt();
+
+    testHashes = new String[testCount];
+    testNames = new String[testCount];
+
+    for (int i = 0; i < testCount; i++) {
+      testHashes[i] = IOUtils.readString(buffer);
+      testNames[i] = IOUtils.readString(buffer);
+    }
+
+    int elementCount = buffer.getInt();
+
+    elementNames = new String[elementCount];
+    elementOffsets = new int[elementCount];
+    elementIndexes = new HashMap<String, Integer>(2 * elementCount);
+
+    for (int i = 0; i < elementCount; i++) {
+      elementNames[i] = IOUtils.readString(buffer);
+      elementOffsets[i] = buffer.getInt();
+
+      elementIndexes.put(elementNames[i], i);
+    }
+
+    testSetsStart = buffer.position();
+  }
+
+  public String getRevision() {
+    return revision;
+  }
+
+  /**
+   * @return The name of a method element.
+   */
+  public static String getMethodElement(String className, String methodName, String desc) {
+    return className + '#' + methodName + desc;
+  }
+
+  /**
+   * @return The name of a line element.
+   */
+  public static String getLineElement(String className, int line) {
+    return className + ':' + line;
+  }
+
+  /**
+   * @return The number of tests.
+   */
+  public int getTestCount() {
+    return testHashes.length;
+  }
+
+  public String getTestHash(int testId) {
+    return testHashes[testId];
+  }
+
+  /**
+   * @return The full name of the test, or its hash if the name is unknown.
+   */
+  public String getTestName(int testId) {
+    return testNames[testId].isEmpty() ? testHashes[testId] : testNames[testId];
+  }
+
+  /**
+   * @return The number of elements.
+   */
+  public int getElementCount() {
+    return elementNames.length;
+  }
+
+  public String getElementName(int elementIndex) {
+    return elementNames[elementIndex];
+  }
+
+  /**
+   * @param elementName
+   *          The name of an element.
+   *
+   * @return The index of the element, or -1 if it is not in the index.
+   */
+  public int getElementIndex(String elementName) {
+    Integer index = elementIndexes.get(elementName);
+
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param elementIndex
+   *          The index of an element.
+   *
+   * @return The ids of the tests covering the element in ascending order.
+   */
+  public int[] getCoveringTests(int elementIndex) {
+    return CompressedBitmap.decodeValues(getTestSet(elementIndex));
+  }
+
+  /**
+   * @param elementName
+   *          The name of an element.
+   *
+   * @return The ids of the tests covering the element in ascending order, empty if the element is not in the index.
+   */
+  public int[] getCoveringTests(String elementName) {
+    int index = getElementIndex(elementName);
+
+    return index < 0 ? new int[0] : getCoveringTests(index);
+  }
+
+  /**
+   * @param elementIndex
+   *          The index of an element.
+   *
+   * @return The tests covering the element as a bitset, test i is stored in bit (i % 64) of word (i / 64). The bitset has enough words
+   *         for all tests.
+   */
+  public long[] getCoveringTestWords(int elementIndex) {
+    return CompressedBitmap.decodeWords(getTestSet(elementIndex), (getTestCount() + 63) >>> 6);
+  }
+
+  /**
+   * @param elementIndex
+   *          The index of an element.
+   * @param testMask
+   *          A set of tests as a bitset, test i is stored in bit (i % 64) of word (i / 64).
+   *
+   * @return The number of tests in the set which cover the element.
+   */
+  public int countCoveringTests(int elementIndex, long[] testMask) {
+    return CompressedBitmap.countIntersection(getTestSet(elementIndex), testMask);
+  }
+
+  private ByteBuffer getTestSet(int elementIndex) {
+    ByteBuffer input = buffer.duplicate();
+
+    IOUtils.seek(input, testSetsStart + elementOffsets[elementIndex]);
+
+    return input;
+  }
+
+  @Override
+  public void close() {
+    // The mapping is released by the garbage collector.
+  }
+
+  /**
+   * Prints the tests covering the given elements.
+   *
+   * @param args
+   *          The index file followed by the names of the elements.
+   *
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: CoverageIndexReader <index file> <element>...");
+      System.exit(1);
+    }
+
+    try (CoverageIndexReader reader = new CoverageIndexReader(new File(args[0]))) {
+      for (int i = 1; i < args.length; i++) {
+        long start = System.nanoTime();
+        int[] tests = reader.getCoveringTests(args[i]);
+        long end = System.nanoTime();
+
+        System.out.println(String.format("%s: %d tests (%dus)", args[i], tests.length, (end - start) / 1000));
+
+        for (int test : tests) {
+          System.out.println("  " + reader.getTestName(test));
+        }
+      }
+    }
+  }
+
+}
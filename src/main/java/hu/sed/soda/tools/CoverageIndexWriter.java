@@ -0,0 +1,90 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the inverted coverage index, which associates every code element (class, method and line) with the set of tests covering it.
+ *
+ * The file starts with a header, which holds the revision the coverage has been collected from and is followed by
+ * <ul>
+ * <li>the test table: the hash and the full name of every test, the position of a test in the table is its id,</li>
+ * <li>the element table: the name of every element and the offset of its test set relative to the start of the test sets,</li>
+ * <li>the test sets of the elements, encoded by {@link CompressedBitmap}.</li>
+ * </ul>
+ */
+public final class CoverageIndexWriter {
+
+  static final int MAGIC = 0x534f4449;
+
+  static final short VERSION = 2;
+
+  private CoverageIndexWriter() {
+  }
+
+  /**
+   * Writes an index file.
+   *
+   * @param file
+   *          The index file.
+   * @param revision
+   *          The revision identifier of the program the coverage has been collected from.
+   * @param testHashes
+   *          The hashes of the names of the tests in the order of their ids.
+   * @param testNames
+   *          The full names of the tests in the order of their ids.
+   * @param elementNames
+   *          The names of the elements.
+   * @param testSets
+   *          The encoded test sets of the elements.
+   *
+   * @throws IOException
+   */
+  public static void write(File file, String revision, List<String> testHashes, List<String> testNames, List<String> elementNames, List<byte[]> testSets) throws IOException {
+    // The file is replaced only when it has been written completely, so a failure never leaves a truncated file behind.
+    File tempFile = IOUtils.createTempFile(file);
+
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        IOUtils.writeString(output, revision);
+
+        output.writeInt(testHashes.size());
+
+        for (int i = 0; i < testHashes.size(); i++) {
+          IOUtils.writeString(output, testHashes.get(i));
+          IOUtils.writeString(output, testNames.get(i));
+        }
+
+        output.writeInt(elementNames.size());
+
+        long offset = 0;
+
+        for (int i = 0; i < elementNames.size(); i++) {
+          if (offset > Integer.MAX_VALUE) {
+            throw new IOException("The coverage index cannot be larger than 2GB.");
+          }
+
+          IOUtils.writeString(output, elementNames.get(i));
+          output.writeInt((int) offset);
+
+          offset += testSets.get(i).length;
+        }
+
+        for (byte[] testSet : testSets) {
+          output.write(testSet);
+        }
+      }
+
+      IOUtils.replace(tempFile, file);
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+}
@@ -0,0 +1,207 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Provides the coverage data of the tests regardless of the way it has been stored by the listener. The tests are addressed by their
+ * indexes, which are assigned in a deterministic order. The implementations can be shared between threads.
+ */
+public abstract class CoverageInput implements Closeable {
+
+  /**
+   * Opens the coverage data in the given directory. If the directory contains {@link Constants#MATRIX_FILE_EXT coverage matrix} containers
+   * they are read, otherwise the separate {@link Constants#COVERAGE_FILE_EXT exec} files are.
+   * 
+   * @param inputDirectory
+   *          The directory which holds the coverage data.
+   * 
+   * @return The coverage data of the tests.
+   * 
+   * @throws IOException
+   */
+  public static CoverageInput open(File inputDirectory) throws IOException {
+    String[] matrixFiles = scan(inputDirectory, Constants.MATRIX_FILE_EXT);
+
+    if (matrixFiles.length > 0) {
+      return new MatrixCoverageInput(inputDirectory, matrixFiles);
+    } else {
+      return new ExecCoverageInput(inputDirectory, scan(inputDirectory, Constants.COVERAGE_FILE_EXT));
+    }
+  }
+
+  /**
+   * Collects the files with the given extension.
+   * 
+   * @param baseDir
+   *          The root directory of the search.
+   * @param extension
+   *          The file extension.
+   * 
+   * @return The sorted list of file paths relative to baseDir.
+   */
+  static String[] scan(File baseDir, String extension) {
+    DirectoryScanner scanner = new DirectoryScanner();
+
+    scanner.setBasedir(baseDir.getAbsoluteFile());
+    scanner.setIncludes(new String[] { String.format("*.%s", extension) });
+    scanner.scan();
+
+    String[] paths = scanner.getIncludedFiles();
+
+    Arrays.sort(paths);
+
+    return paths;
+  }
+
+  /**
+   * @return The number of tests.
+   */
+  public abstract int size();
+
+  /**
+   * @param index
+   *          The index of a test.
+   * 
+   * @return The hash of the name of the test.
+   */
+  public abstract String getHash(int index);
+
+  /**
+   * Loads the coverage data of a test.
+   * 
+   * @param index
+   *          The index of a test.
+   * 
+   * @return An {@link ExecFileLoader} that holds the coverage data.
+   * 
+   * @throws IOException
+   */
+  public abstract ExecFileLoader load(int index) throws IOException;
+
+  /**
+   * Reads the separate exec files of the tests.
+   */
+  private static class ExecCoverageInput extends CoverageInput {
+
+    private final File inputDirectory;
+
+    private final String[] paths;
+
+    ExecCoverageInput(File inputDirectory, String[] paths) {
+      this.inputDirectory = inputDirectory;
+      this.paths = paths;
+    }
+
+    @Override
+    public int size() {
+      return paths.length;
+    }
+
+    @Override
+    public String getHash(int index) {
+      return paths[index].substring(0, paths[index].length() - Constants.COVERAGE_FILE_EXT.length() - 1);
+    }
+
+    @Override
+    public ExecFileLoader load(int index) throws IOException {
+      ExecFileLoader execFileLoader = new ExecFileLoader();
+      execFileLoader.load(new File(inputDirectory, paths[index]));
+
+      return execFileLoader;
+    }
+
+    @Override
+    public void close() {
+      // Every file is closed right after it has been loaded.
+    }
+  }
+
+  /**
+   * Reads the tests of one or more coverage matrix containers.
+   */
+  private static class MatrixCoverageInput extends CoverageInput {
+
+    private final CoverageMatrixReader[] readers;
+
+    /**
+     * The index of the first test of each reader.
+     */
+    private final int[] firstIndexes;
+
+    private final int size;
+
+    MatrixCoverageInput(File inputDirectory, String[] paths) throws IOException {
+      readers = new CoverageMatrixReader[paths.length];
+      firstIndexes = new int[paths.length];
+
+      int count = 0;
+
+      for (int i = 0; i < paths.length; i++) {
+        readers[i] = new CoverageMatrixReader(new File(inputDirectory, paths[i]));
+        firstIndexes[i] = count;
+
+        count += readers[i].getTestCount();
+      }
+
+      size = count;
+    }
+
+    private int getReader(int index) {
+      int reader = Arrays.binarySearch(firstIndexes, index);
+
+      if (reader < 0) {
+        reader = -reader - 2;
+      }
+
+      // Skipping the readers without tests.
+      while (reader + 1 < readers.length && firstIndexes[reader + 1] == index) {
+        reader++;
+      }
+
+      return reader;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public String getHash(int index) {
+      int reader = getReader(index);
+
+      return readers[reader].getTestHash(index - firstIndexes[reader]);
+    }
+
+    @Override
+    public ExecFileLoader load(int index) {
+      int reader = getReader(index);
+
+      ExecFileLoader execFileLoader = new ExecFileLoader();
+      readers[reader].getExecutionData(index - firstIndexes[reader]).accept(execFileLoader.getExecutionDataStore());
+
+      SessionInfo session = readers[reader].getSessionInfo(index - firstIndexes[reader]);
+
+      if (session != null) {
+        execFileLoader.getSessionInfoStore().visitSessionInfo(session);
+      }
+
+      return execFileLoader;
+    }
+
+    @Override
+    public void close() {
+      for (CoverageMatrixReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+}
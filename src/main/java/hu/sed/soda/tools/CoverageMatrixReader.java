@@ -0,0 +1,407 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Reads a coverage matrix container written by the {@link CoverageMatrixWriter}. The file is memory-mapped and the tests are accessed
+ * randomly through the offset index at the end of the file. If the index is missing (e.g. the test run has crashed) the records are scanned
+ * sequentially instead.
+ *
+ * The reader is immutable after it has been opened, so it can be shared between threads.
+ */
+public class CoverageMatrixReader implements Closeable {
+
+  /**
+   * The memory-mapped content of the file.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The version of the file format.
+   */
+  private final short version;
+
+  /**
+   * The offsets of the class records.
+   */
+  private final List<Integer> classOffsets = new ArrayList<Integer>();
+
+  /**
+   * The offsets of the test records.
+   */
+  private final List<Integer> testOffsets = new ArrayList<Integer>();
+
+  private long[] classIds;
+
+  private String[] classNames;
+
+  private int[] probeCounts;
+
+  /**
+   * The offset after the last complete record.
+   */
+  private int recordsEnd;
+
+  /**
+   * Whether the file has been closed properly, i.e. it has an index.
+   */
+  private boolean indexed;
+
+  /**
+   * Opens a coverage matrix container.
+   *
+   * @param file
+   *          The container file.
+   *
+   * @throws IOException
+   */
+  public CoverageMatrixReader(File file) throws IOException {
+    this(file, true);
+  }
+
+  /**
+   * Opens a coverage matrix container.
+   *
+   * @param file
+   *          The container file.
+   * @param map
+   *          Whether the file should be memory-mapped. Otherwise it is read into the memory, so it can be replaced while the reader is used.
+   *
+   * @throws IOException
+   */
+  CoverageMatrixReader(File file, boolean map) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(String.format("Coverage matrix '%s' is larger than 2GB.", file.getPath()));
+      }
+
+      if (map) {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        buffer = mapped.asReadOnlyBuffer();
+      } else {
+        buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).asReadOnlyBuffer();
+      }
+    }
+
+    if (buffer.limit() < CoverageMatrixWriter.HEADER_SIZE || buffer.getInt(0) != CoverageMatrixWriter.MAGIC) {
+      throw new IOException(String.format("File '%s' is not a coverage matrix.", file.getPath()));
+    }
+
+    version = buffer.getShort(4);
+
+    if (version != CoverageMatrixWriter.VERSION && version != CoverageMatrixWriter.VERSION_WITHOUT_SESSIONS) {
+      throw new IOException(String.format("Unsupported coverage matrix version %d in '%s'.", version, file.getPath()));
+    }
+
+    if (!readIndex()) {
+      scanRecords();
+    }
+
+    readClasses();
+  }
+
+  /**
+   * Reads the index at the end of the file.
+   *
+   * @return False if the file has no valid index.
+   */
+  private boolean readIndex() {
+    int limit = buffer.limit();
+
+    if (limit < CoverageMatrixWriter.HEADER_SIZE + CoverageMatrixWriter.TRAILER_SIZE || buffer.getInt(limit - 4) != CoverageMatrixWriter.MAGIC) {
+      return false;
+    }
+
+    long indexOffset = buffer.getLong(limit - CoverageMatrixWriter.TRAILER_SIZE);
+
+    if (indexOffset < CoverageMatrixWriter.HEADER_SIZE || indexOffset >= limit || buffer.get((int) indexOffset) != CoverageMatrixWriter.BLOCK_INDEX) {
+      return false;
+    }
+
+    ByteBuffer input = buffer.duplicate();
+    IOUtils.seek(input, (int) indexOffset + 1);
+
+    int classCount = input.getInt();
+
+    for (int i = 0; i < classCount; i++) {
+      classOffsets.add(input.getInt());
+    }
+
+    int testCount = input.getInt();
+
+    for (int i = 0; i < testCount; i++) {
+      testOffsets.add(input.getInt());
+    }
+
+    recordsEnd = (int) indexOffset;
+    indexed = true;
+
+    return true;
+  }
+
+  /**
+   * Collects the offsets of the records by reading the file sequentially. An incomplete record at the end of the file is ignored.
+   */
+  private void scanRecords() {
+    ByteBuffer input = buffer.duplicate();
+    IOUtils.seek(input, CoverageMatrixWriter.HEADER_SIZE);
+
+    recordsEnd = input.position();
+
+    try {
+      while (input.hasRemaining()) {
+        int offset = input.position();
+        byte block = input.get();
+
+        if (block == CoverageMatrixWriter.BLOCK_CLASS) {
+          input.getLong();
+          skipString(input);
+          input.getInt();
+
+          classOffsets.add(offset);
+        } else if (block == CoverageMatrixWriter.BLOCK_TEST) {
+          skipString(input);
+          skipSession(input);
+
+          int entryCount = input.getInt();
+
+          for (int i = 0; i < entryCount; i++) {
+            int classIndex = input.getInt();
+
+            if (classIndex >= 0) {
+              IOUtils.seek(input, input.position() + 8 * getWordCount(getProbeCountAt(classOffsets.get(classIndex))));
+            }
+          }
+
+          testOffsets.add(offset);
+        } else {
+          break;
+        }
+
+        recordsEnd = input.position();
+      }
+    } catch (RuntimeException e) {
+      // The last record is incomplete, it is ignored.
+    }
+  }
+
+  private void readClasses() {
+    int classCount = classOffsets.size();
+
+    classIds = new long[classCount];
+    classNames = new String[classCount];
+    probeCounts = new int[classCount];
+
+    for (int i = 0; i < classCount; i++) {
+      ByteBuffer input = buffer.duplicate();
+      IOUtils.seek(input, classOffsets.get(i) + 1);
+
+      classIds[i] = input.getLong();
+      classNames[i] = IOUtils.readString(input);
+      probeCounts[i] = input.getInt();
+    }
+  }
+
+  private int getProbeCountAt(int classOffset) {
+    ByteBuffer input = buffer.duplicate();
+    IOUtils.seek(input, classOffset + 9);
+
+    skipString(input);
+
+    return input.getInt();
+  }
+
+  static int getWordCount(int probeCount) {
+    return (probeCount + 63) >>> 6;
+  }
+
+  private static void skipString(ByteBuffer input) {
+    int length = input.getInt();
+
+    if (length > 0) {
+      IOUtils.seek(input, input.position() + length);
+    }
+  }
+
+  /**
+   * Skips the session of a test record, which is stored since {@link CoverageMatrixWriter#VERSION_WITHOUT_SESSIONS}.
+   */
+  private void skipSession(ByteBuffer input) {
+    if (version != CoverageMatrixWriter.VERSION_WITHOUT_SESSIONS) {
+      skipString(input);
+      IOUtils.seek(input, input.position() + 16);
+    }
+  }
+
+  /**
+   * @return True if the file has been closed properly and contains an index.
+   */
+  public boolean isIndexed() {
+    return indexed;
+  }
+
+  /**
+   * @return The offset after the last complete record.
+   */
+  long getRecordsEnd() {
+    return recordsEnd;
+  }
+
+  /**
+   * @return The number of distinct classes.
+   */
+  public int getClassCount() {
+    return classIds.length;
+  }
+
+  public long getClassId(int classIndex) {
+    return classIds[classIndex];
+  }
+
+  public String getClassName(int classIndex) {
+    return classNames[classIndex];
+  }
+
+  public int getProbeCount(int classIndex) {
+    return probeCounts[classIndex];
+  }
+
+  /**
+   * @return The number of tests.
+   */
+  public int getTestCount() {
+    return testOffsets.size();
+  }
+
+  /**
+   * @param testIndex
+   *          The index of a test.
+   *
+   * @return The hash of the name of the test.
+   */
+  public String getTestHash(int testIndex) {
+    ByteBuffer input = buffer.duplicate();
+    IOUtils.seek(input, testOffsets.get(testIndex) + 1);
+
+    return IOUtils.readString(input);
+  }
+
+  /**
+   * Reads the probes of a test.
+   *
+   * @param testIndex
+   *          The index of a test.
+   * @param visitor
+   *          The visitor which receives the probe bitsets of the classes covered by the test.
+   */
+  public void readTest(int testIndex, ProbeVisitor visitor) {
+    ByteBuffer input = buffer.duplicate();
+    IOUtils.seek(input, testOffsets.get(testIndex) + 1);
+
+    skipString(input);
+    skipSession(input);
+
+    int entryCount = input.getInt();
+
+    for (int i = 0; i < entryCount; i++) {
+      int classIndex = input.getInt();
+
+      if (classIndex < 0) {
+        // A class without executed probes.
+        classIndex = ~classIndex;
+
+        visitor.visitProbes(classIndex, new long[getWordCount(probeCounts[classIndex])]);
+      } else {
+        long[] words = new long[getWordCount(probeCounts[classIndex])];
+
+        input.asLongBuffer().get(words);
+        IOUtils.seek(input, input.position() + 8 * words.length);
+
+        visitor.visitProbes(classIndex, words);
+      }
+    }
+  }
+
+  /**
+   * @param testIndex
+   *          The index of a test.
+   *
+   * @return The session in which the coverage of the test has been recorded, or null if it is unknown.
+   */
+  public SessionInfo getSessionInfo(int testIndex) {
+    if (version == CoverageMatrixWriter.VERSION_WITHOUT_SESSIONS) {
+      return null;
+    }
+
+    ByteBuffer input = buffer.duplicate();
+    IOUtils.seek(input, testOffsets.get(testIndex) + 1);
+
+    skipString(input);
+
+    String id = IOUtils.readString(input);
+
+    return id == null ? null : new SessionInfo(id, input.getLong(), input.getLong());
+  }
+
+  /**
+   * Creates the execution data of a test.
+   *
+   * @param testIndex
+   *          The index of a test.
+   *
+   * @return The execution data of the classes covered by the test.
+   */
+  public ExecutionDataStore getExecutionData(int testIndex) {
+    final ExecutionDataStore store = new ExecutionDataStore();
+
+    readTest(testIndex, new ProbeVisitor() {
+      @Override
+      public void visitProbes(int classIndex, long[] words) {
+        boolean[] probes = new boolean[probeCounts[classIndex]];
+
+        for (int i = 0; i < probes.length; i++) {
+          probes[i] = (words[i >>> 6] & (1L << i)) != 0;
+        }
+
+        store.put(new ExecutionData(classIds[classIndex], classNames[classIndex], probes));
+      }
+    });
+
+    return store;
+  }
+
+  @Override
+  public void close() {
+    // The mapping is released by the garbage collector.
+  }
+
+  /**
+   * Receives the probes of a test class by class.
+   */
+  public interface ProbeVisitor {
+
+    /**
+     * @param classIndex
+     *          The index of a class.
+     * @param words
+     *          The probes of the class as a bitset, probe i is stored in bit (i % 64) of word (i / 64).
+     */
+    public void visitProbes(int classIndex, long[] words);
+
+  }
+
+}
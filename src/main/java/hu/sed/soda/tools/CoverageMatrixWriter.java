@@ -0,0 +1,324 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Stores the coverage data of all tests in a single packed container file instead of one exec file per test.
+ *
+ * The file starts with a header, which is followed by the records:
+ * <ul>
+ * <li>a class record (JaCoCo class id, name and probe count) is written once, when the class is covered for the first time,</li>
+ * <li>a test record holds the hash of the test name, the session of the test and a probe bitset for each class covered by the test. The
+ * classes of the execution data without executed probes are stored without a bitset, so the reports can still tell their mismatching
+ * versions.</li>
+ * </ul>
+ * When the writer is closed an index of the record offsets and a trailer pointing to the index are appended. The container is written to a
+ * temporary file which replaces the container when the writer is closed, so the container is never modified in place. The records of an
+ * existing container are copied into the temporary file first, so further tests are appended to it. The temporary file of a crashed test
+ * run has no index, but it can still be read sequentially.
+ */
+public class CoverageMatrixWriter implements CoverageSink {
+
+  static final int MAGIC = 0x534f4441;
+
+  static final short VERSION = 2;
+
+  /**
+   * The version of the containers without the sessions of the tests and the classes without executed probes, which can still be read.
+   */
+  static final short VERSION_WITHOUT_SESSIONS = 1;
+
+  static final int HEADER_SIZE = 6;
+
+  static final int TRAILER_SIZE = 12;
+
+  static final byte BLOCK_CLASS = 0x01;
+
+  static final byte BLOCK_TEST = 0x02;
+
+  static final byte BLOCK_INDEX = 0x03;
+
+  private final File file;
+
+  private final File tempFile;
+
+  private final DataOutputStream output;
+
+  /**
+   * The offset at which the next record is written.
+   */
+  private long offset;
+
+  private final Map<Long, Integer> classIndexes = new HashMap<Long, Integer>();
+
+  private final List<Integer> probeCounts = new ArrayList<Integer>();
+
+  private final List<Long> classOffsets = new ArrayList<Long>();
+
+  private final List<Long> testOffsets = new ArrayList<Long>();
+
+  private final Set<String> testHashes = new HashSet<String>();
+
+  /**
+   * Creates a new container or opens an existing one for appending.
+   *
+   * @param file
+   *          The container file.
+   *
+   * @throws IOException
+   */
+  public CoverageMatrixWriter(File file) throws IOException {
+    this.file = file;
+
+    tempFile = IOUtils.createTempFile(file);
+
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+    } catch (IOException e) {
+      tempFile.delete();
+
+      throw e;
+    }
+
+    try {
+      output.writeInt(MAGIC);
+      output.writeShort(VERSION);
+
+      offset = HEADER_SIZE;
+
+      if (file.exists() && file.length() > 0) {
+        // The container is read into the memory, so it is not mapped when it is replaced.
+        copyRecords(new CoverageMatrixReader(file, false));
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        output.close();
+      } finally {
+        tempFile.delete();
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the records of an existing container, the classes keep their indexes.
+   */
+  private void copyRecords(CoverageMatrixReader reader) throws IOException {
+    for (int i = 0; i < reader.getClassCount(); i++) {
+      writeClass(reader.getClassId(i), reader.getClassName(i), reader.getProbeCount(i));
+    }
+
+    for (int i = 0; i < reader.getTestCount(); i++) {
+      final List<Integer> entryClasses = new ArrayList<Integer>();
+      final List<long[]> entryWords = new ArrayList<long[]>();
+
+      reader.readTest(i, new CoverageMatrixReader.ProbeVisitor() {
+        @Override
+        public void visitProbes(int classIndex, long[] words) {
+          entryClasses.add(classIndex);
+          entryWords.add(isEmpty(words) ? null : words);
+        }
+      });
+
+      writeTest(reader.getTestHash(i), reader.getSessionInfo(i), entryClasses, entryWords);
+    }
+
+    reader.close();
+  }
+
+  @Override
+  public synchronized boolean contains(String testHash) {
+    return testHashes.contains(testHash);
+  }
+
+  @Override
+  public synchronized void write(String testHash, ExecFileLoader loader, TestMetrics metrics) throws IOException {
+    long start = System.nanoTime();
+    long startOffset = offset;
+
+    List<Integer> entryClasses = new ArrayList<Integer>();
+    List<long[]> entryWords = new ArrayList<long[]>();
+
+    // The records of the newly covered classes have to precede the record of the test.
+    for (ExecutionData data : loader.getExecutionDataStore().getContents()) {
+      entryClasses.add(getClassIndex(data));
+      entryWords.add(toWords(data.getProbes()));
+    }
+
+    SessionInfoStore sessions = loader.getSessionInfoStore();
+
+    writeTest(testHash, sessions.isEmpty() ? null : sessions.getMerged(sessions.getInfos().get(0).getId()), entryClasses, entryWords);
+
+    if (metrics != null) {
+      metrics.setSave(System.nanoTime() - start, offset - startOffset);
+    }
+  }
+
+  /**
+   * Writes a test record.
+   *
+   * @param session
+   *          The session of the test, or null if it is unknown.
+   * @param entryWords
+   *          The probe bitsets of the classes, null for the classes without executed probes.
+   */
+  private void writeTest(String testHash, SessionInfo session, List<Integer> entryClasses, List<long[]> entryWords) throws IOException {
+    testOffsets.add(checkOffset());
+
+    output.writeByte(BLOCK_TEST);
+    offset += 1;
+
+    writeString(testHash);
+    writeString(session == null ? null : session.getId());
+
+    output.writeLong(session == null ? 0 : session.getStartTimeStamp());
+    output.writeLong(session == null ? 0 : session.getDumpTimeStamp());
+    output.writeInt(entryClasses.size());
+
+    offset += 8 + 8 + 4;
+
+    for (int i = 0; i < entryClasses.size(); i++) {
+      long[] words = entryWords.get(i);
+
+      if (words == null) {
+        // The complement of the index marks a class without a bitset.
+        output.writeInt(~entryClasses.get(i));
+
+        offset += 4;
+      } else {
+        output.writeInt(entryClasses.get(i));
+
+        for (long word : words) {
+          output.writeLong(word);
+        }
+
+        offset += 4 + 8 * words.length;
+      }
+    }
+
+    testHashes.add(testHash);
+  }
+
+  /**
+   * Returns the index of a class, writes its class record if it has not been written yet.
+   */
+  private int getClassIndex(ExecutionData data) throws IOException {
+    Integer index = classIndexes.get(data.getId());
+
+    return index == null ? writeClass(data.getId(), data.getName(), data.getProbes().length) : index;
+  }
+
+  /**
+   * Writes a class record.
+   *
+   * @return The index of the class.
+   */
+  private int writeClass(long classId, String className, int probeCount) throws IOException {
+    int index = probeCounts.size();
+
+    classIndexes.put(classId, index);
+    probeCounts.add(probeCount);
+    classOffsets.add(checkOffset());
+
+    output.writeByte(BLOCK_CLASS);
+    output.writeLong(classId);
+    writeString(className);
+    output.writeInt(probeCount);
+
+    offset += 1 + 8 + 4;
+
+    return index;
+  }
+
+  private static boolean isEmpty(long[] words) {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Packs the probes into a bitset.
+   *
+   * @return The bitset or null if no probe was executed.
+   */
+  private static long[] toWords(boolean[] probes) {
+    long[] words = null;
+
+    for (int i = 0; i < probes.length; i++) {
+      if (probes[i]) {
+        if (words == null) {
+          words = new long[CoverageMatrixReader.getWordCount(probes.length)];
+        }
+
+        words[i >>> 6] |= 1L << i;
+      }
+    }
+
+    return words;
+  }
+
+  private void writeString(String value) throws IOException {
+    offset += IOUtils.writeString(output, value);
+  }
+
+  private long checkOffset() throws IOException {
+    if (offset > Integer.MAX_VALUE) {
+      throw new IOException("The coverage matrix cannot be larger than 2GB.");
+    }
+
+    return offset;
+  }
+
+  /**
+   * Appends the index and the trailer, then replaces the container with the temporary file.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      long indexOffset = checkOffset();
+
+      output.writeByte(BLOCK_INDEX);
+      output.writeInt(classOffsets.size());
+
+      for (long classOffset : classOffsets) {
+        output.writeInt((int) classOffset);
+      }
+
+      output.writeInt(testOffsets.size());
+
+      for (long testOffset : testOffsets) {
+        output.writeInt((int) testOffset);
+      }
+
+      output.writeLong(indexOffset);
+      output.writeInt(MAGIC);
+      output.close();
+
+      IOUtils.replace(tempFile, file);
+    } finally {
+      output.close();
+      tempFile.delete();
+    }
+  }
+
+}
@@ -0,0 +1,35 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Common interface for the different ways of storing the coverage data of the tests.
+ */
+public interface CoverageSink extends Closeable {
+
+  /**
+   * @param testHash
+   *          The hash of the name of a test.
+   *
+   * @return True if coverage data has already been stored for the test.
+   */
+  public boolean contains(String testHash);
+
+  /**
+   * Stores the coverage data of a test.
+   *
+   * @param testHash
+   *          The hash of the name of the test.
+   * @param loader
+   *          An {@link ExecFileLoader} that holds the coverage data.
+   * @param metrics
+   *          The metrics of the test, the time of writing and the number of written bytes are recorded in it. May be null.
+   *
+   * @throws IOException
+   */
+  public void write(String testHash, ExecFileLoader loader, TestMetrics metrics) throws IOException;
+
+}
@@ -1,18 +1,15 @@
 package hu.sed.soda.tools;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
-import org.jacoco.core.tools.ExecDumpClient;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.junit.runner.Description;
 import org.junit.runner.Result;
@@ -30,11 +27,14 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
   private static final Logger LOGGER = Logger.getLogger(CustomTestExecutionListener.class.getName());
 
   /**
-   * The version number of the program under test.
-   * 
-   * TODO: Get this value automatically.
+   * The version number of the program under test, set by the {@link Constants#REVISION_PROPERTY} system property.
+   */
+  private static String revision = ForkSettings.getRevision();
+
+  /**
+   * The directory of the outputs.
    */
-  private static String revision = "0";
+  private static File baseDirectory = ForkSettings.getBaseDirectory();
 
   /**
    * Directory for coverage data.
@@ -47,9 +47,30 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
   private static long testIndex = 0;
 
   /**
-   * The results of tests with method level granularity.
+   * Writes the results of tests with method level granularity as they finish, opened on demand.
    */
-  private static List<TestInfo> testResults = new LinkedList<TestInfo>();
+  private static TestResultsWriter resultsWriter;
+
+  /**
+   * The metrics of the dumped tests in the order of the tests, whose coverage data may still be written by the coverage sink. They are
+   * written as soon as they are {@link TestMetrics#isComplete() complete}.
+   */
+  private static Deque<TestMetrics> pendingMetrics = new ArrayDeque<TestMetrics>();
+
+  /**
+   * The summary of the metrics written since the results were closed last.
+   */
+  private static TestMetrics.Summary metricsSummary = new TestMetrics.Summary();
+
+  /**
+   * The time of the reset before the actual test.
+   */
+  private static long actualResetTime = 0;
+
+  /**
+   * The time at which the actual test has started, after its coverage has been reset.
+   */
+  private static long actualStartTime = 0;
 
   /**
    * Information about the test which is running at the moment.
@@ -61,19 +82,44 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
    */
   private static Map<JUnitStatus, Long> testStats = new HashMap<JUnitStatus, Long>();
 
+  /**
+   * Collects the execution data from the JaCoCo agent.
+   */
+  private static CoverageDumper coverageDumper;
+
+  /**
+   * How the coverage data of the tests is stored.
+   */
+  private static OutputMode outputMode;
+
+  /**
+   * Stores the coverage data of the tests, opened on demand.
+   */
+  private static CoverageSink coverageSink;
+
+  /**
+   * Whether the reset at the start of a test is folded into the dump and reset at the end of the previous test.
+   */
+  private static boolean pipelineResets = Boolean.parseBoolean(System.getProperty(Constants.AGENT_PIPELINE_PROPERTY, "true"));
+
+  /**
+   * Whether the coverage has been reset at the end of the previous test.
+   */
+  private static boolean coverageReset = false;
+
   /**
    * Initializes the output directory and the log output stream.
    */
   static {
     try {
-      outputDirectory = Constants.COVERAGE_DIR.toFile();
+      outputDirectory = ForkSettings.getCoverageDirectory();
 
       if (!outputDirectory.exists()) {
         outputDirectory.mkdirs();
       }
 
       // Configuring the logger.
-      FileHandler fileHandler = new FileHandler(new File(Constants.BASE_DIR, "CustomJUnitExecutionListener.log").getAbsolutePath(), true);
+      FileHandler fileHandler = new FileHandler(new File(baseDirectory, ForkSettings.getShardName("CustomJUnitExecutionListener") + ".log").getAbsolutePath(), true);
       fileHandler.setFormatter(new SimpleFormatter());
 
       LOGGER.addHandler(fileHandler);
@@ -87,86 +133,246 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
     } catch (SecurityException | IOException e) {
       System.err.println(e);
     }
+
+    // The dumper and the output mode fall back to their defaults instead of failing, so the listener can always be loaded.
+    coverageDumper = createCoverageDumper(AgentMode.fromSystemProperties());
+    outputMode = OutputMode.fromSystemProperties();
   }
 
   /**
-   * Writes the collected test results, and the hash mapping to files in the output directory.
-   * The results will be written into the <{@link Constants#BASE_DIR}>/<{@link #revisionNumber}>/TestResults.r<{@link #revision}> file.
-   * The mapping will be written into the <{@link Constants#BASE_DIR}>/<{@link #revisionNumber}>/{@link Constants#MAP_FILE}.r<{@link #revision}> file.
+   * Writes the result and the hash mapping of a finished test, see {@link TestResultsWriter}.
    * 
-   * @param testResults
-   *          List of {@link TestInfo test information} object.
-   * @param revision
-   *          The version identifier of the actual program under test.
+   * @param result
+   *          The {@link TestInfo information} of the test.
+   */
+  private static void writeTestResult(TestInfo result) {
+    try {
+      getResultsWriter().write(result);
+    } catch (IOException e) {
+      LOGGER.warning("Cannot dump test results because: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the metrics at the head of the {@link #pendingMetrics} which are complete, so the metrics are written in the order of the tests.
+   * 
+   * @param all
+   *          Whether the incomplete metrics should be written too, which is the case after the coverage sink has been closed.
+   */
+  private static void writeMetrics(boolean all) {
+    while (!pendingMetrics.isEmpty() && (all || pendingMetrics.peek().isComplete())) {
+      TestMetrics metrics = pendingMetrics.poll();
+
+      metricsSummary.add(metrics);
+
+      try {
+        getResultsWriter().writeMetrics(metrics);
+      } catch (IOException e) {
+        LOGGER.warning("Cannot dump test metrics because: " + e.getMessage());
+      }
+    }
+  }
+
+  private static TestResultsWriter getResultsWriter() throws IOException {
+    if (resultsWriter == null) {
+      resultsWriter = new TestResultsWriter(baseDirectory, revision, true);
+    }
+
+    return resultsWriter;
+  }
+
+  /**
+   * Closes the test results and the metrics of the tests, which have been written as the tests finished.
+   * The results are written into the <{@link #baseDirectory}>/<{@link #revision}>/TestResults.r<{@link #revision}> file.
+   * The mapping is written into the <{@link #baseDirectory}>/<{@link #revision}>/{@link Constants#MAP_FILE}.r<{@link #revision}> file.
+   * The metrics are written into the <{@link #baseDirectory}>/<{@link #revision}>/{@link Constants#METRICS_FILE}.r<{@link #revision}> file
+   * and summarized in the log. The coverage sink has to be closed before, so that the metrics of the pending writes are complete.
+   * If the tests are forked every fork writes its own shards of these files, which are merged by the report goal.
    */
   public static void dumpTestResults() {
-    File resultsDir = new File(Constants.BASE_DIR, revision);
+    writeMetrics(true);
 
-    if (!resultsDir.exists()) {
-      resultsDir.mkdirs();
+    if (resultsWriter != null) {
+      try {
+        resultsWriter.close();
+      } catch (IOException e) {
+        LOGGER.warning("Cannot dump test results because: " + e.getMessage());
+      }
+
+      resultsWriter = null;
     }
 
-    File resultsFile = new File(resultsDir, String.format("TestResults.r%s", revision));
-    File mapFile = new File(resultsDir, String.format("%s.r%s", Constants.MAP_FILE, revision));
+    if (metricsSummary.getCount() > 0) {
+      LOGGER.info(metricsSummary.toString());
 
-    try (
-        BufferedWriter resultOutput = new BufferedWriter(new FileWriter(resultsFile, true));
-        BufferedWriter mapOutput = new BufferedWriter(new FileWriter(mapFile, true))
-    ) {
-      for (TestInfo result : testResults) {
-        resultOutput.write(String.format("%s: %s\n", result.getFinalStatus().getOutcome(), result.getTestName()));
-        mapOutput.write(String.format("%s%s%s\n", result.getHash(), Constants.MAP_FILE_SEPARATOR, result.getTestName()));
+      metricsSummary = new TestMetrics.Summary();
+    }
+  }
+
+  /**
+   * Creates the dumper which collects the execution data according to the given mode. If no agent is attached to the actual JVM, the TCP
+   * server of the agent is used even in {@link AgentMode#LOCAL} mode.
+   * 
+   * @param mode
+   *          The way the agent should be reached.
+   * 
+   * @return A {@link CoverageDumper} instance.
+   */
+  private static CoverageDumper createCoverageDumper(AgentMode mode) {
+    if (mode != AgentMode.TCP) {
+      try {
+        CoverageDumper dumper = new LocalCoverageDumper();
+
+        LOGGER.info("Using the JaCoCo agent of the actual JVM.");
+
+        return dumper;
+      } catch (IllegalStateException | LinkageError e) {
+        if (mode == AgentMode.LOCAL) {
+          LOGGER.severe("No JaCoCo agent is attached to the actual JVM, falling back to its TCP server.");
+        }
       }
+    }
+
+    String address = ForkSettings.getAgentAddress();
+    int port = ForkSettings.getAgentPort();
+
+    LOGGER.info(String.format("Using the JaCoCo agent at %s:%d.", address, port));
+
+    return new RemoteCoverageDumper(address, port,
+        Integer.getInteger(Constants.AGENT_CONNECT_TIMEOUT_PROPERTY, Constants.AGENT_CONNECT_TIMEOUT),
+        Integer.getInteger(Constants.AGENT_READ_TIMEOUT_PROPERTY, Constants.AGENT_READ_TIMEOUT));
+  }
+
+  /**
+   * Closes the connection to the JaCoCo agent. It is reopened if further coverage data is collected.
+   */
+  private static void closeCoverageDumper() {
+    try {
+      coverageDumper.close();
     } catch (IOException e) {
-      LOGGER.warning("Cannot dump test results because: " + e.getMessage());
+      LOGGER.warning("Cannot close the connection to the JaCoCo agent because: " + e.getMessage());
     }
+
+    coverageReset = false;
   }
 
   /**
-   * Saves then resets the actual coverage.
+   * @return The sink which stores the coverage data according to the {@link #outputMode}.
    * 
-   * @param coverageFile
-   *          The file in which the coverage data should be stored.
+   * @throws IOException
+   */
+  private static CoverageSink getCoverageSink() throws IOException {
+    if (coverageSink == null) {
+      if (outputMode == OutputMode.MATRIX) {
+        coverageSink = new CoverageMatrixWriter(new File(outputDirectory, ForkSettings.getShardName(Constants.MATRIX_FILE) + '.' + Constants.MATRIX_FILE_EXT));
+      } else {
+        coverageSink = new ExecFileSink(outputDirectory);
+      }
+
+      int writeQueueSize = Integer.getInteger(Constants.WRITE_QUEUE_PROPERTY, Constants.WRITE_QUEUE_SIZE);
+
+      if (writeQueueSize > 0) {
+        coverageSink = new AsyncCoverageSink(coverageSink, writeQueueSize);
+      }
+    }
+
+    return coverageSink;
+  }
+
+  /**
+   * Closes the coverage sink after the pending data has been written. It is reopened if further coverage data is collected.
+   */
+  private static void closeCoverageSink() {
+    if (coverageSink != null) {
+      try {
+        coverageSink.close();
+      } catch (IOException e) {
+        LOGGER.warning("Cannot close the coverage output because: " + e.getMessage());
+      }
+
+      coverageSink = null;
+    }
+  }
+
+  /**
+   * Saves then resets the actual coverage. The duration of the test and the overhead of the dump are recorded in the {@link #pendingMetrics}.
+   * 
+   * @param testHash
+   *          The hash of the name of the test whose coverage data should be stored.
    * 
    * @return True if the coverage data has been dumped, false if the data was only reset.
    */
-  public static boolean dumpAndResetCoverage(File coverageFile) {
+  public static boolean dumpAndResetCoverage(String testHash) {
+    long start = System.nanoTime();
     boolean dump = false;
 
+    TestMetrics metrics = new TestMetrics(testHash);
+
+    metrics.setWallTime(actualStartTime == 0 ? 0 : start - actualStartTime);
+    metrics.setResetTime(actualResetTime);
+
     try {
-      if (!coverageFile.exists()) {
+      CoverageSink sink = getCoverageSink();
+
+      if (!sink.contains(testHash)) {
         dump = true;
       }
 
-      ExecDumpClient client = new ExecDumpClient();
-      client.setReset(true);
-      client.setDump(dump);
-
-      ExecFileLoader loader = client.dump(Constants.JACOCO_AGENT_ADDRESS, Constants.JACOCO_AGENT_PORT);
+      coverageReset = false;
 
       if (dump) {
-        loader.save(coverageFile, false);
+        ExecFileLoader loader = coverageDumper.dumpAndReset();
+
+        coverageReset = true;
+
+        metrics.setDumpTime(System.nanoTime() - start);
+
+        sink.write(testHash, loader, metrics);
+
+        pendingMetrics.add(metrics);
+      } else {
+        coverageDumper.reset();
+
+        coverageReset = true;
       }
     } catch (IOException e) {
       LOGGER.warning("Cannot dump and reset coverage because: " + e.getMessage());
+
+      // A failed write may still have stored the data of the test, e.g. the background sink reports the failures of earlier tests.
+      if (dump && coverageSink != null && coverageSink.contains(testHash)) {
+        pendingMetrics.add(metrics);
+      } else {
+        dump = false;
+      }
     }
 
+    writeMetrics(false);
+
+    actualStartTime = 0;
+    actualResetTime = 0;
+
     return dump;
   }
 
   /**
-   * Resets the actual coverage.
+   * Resets the actual coverage unless it has already been reset at the end of the previous test and resets are pipelined. The duration of
+   * the test is measured from the end of the reset.
    */
   public static void resetCoverage() {
-    try {
-      ExecDumpClient client = new ExecDumpClient();
-      client.setReset(true);
-      client.setDump(false);
+    long start = System.nanoTime();
 
-      client.dump(Constants.JACOCO_AGENT_ADDRESS, Constants.JACOCO_AGENT_PORT);
-    } catch (IOException e) {
-      LOGGER.warning("Cannot reset coverage because: " + e.getMessage());
+    if (pipelineResets && coverageReset) {
+      coverageReset = false;
+    } else {
+      try {
+        coverageDumper.reset();
+      } catch (IOException e) {
+        LOGGER.warning("Cannot reset coverage because: " + e.getMessage());
+      }
     }
+
+    actualStartTime = System.nanoTime();
+    actualResetTime = actualStartTime - start;
   }
 
   // //////////////////////////////////////////////////////////////////////////
@@ -232,12 +438,10 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
   public void testFinished(Description description) throws Exception {
     handleEvent(description, JUnitStatus.FINISHED);
 
-    File coverageFile = new File(outputDirectory, actualTestInfo.getHash() + '.' + Constants.COVERAGE_FILE_EXT);
-
-    if (dumpAndResetCoverage(coverageFile)) {
-      testResults.add(actualTestInfo);
+    if (dumpAndResetCoverage(actualTestInfo.getHash())) {
+      writeTestResult(actualTestInfo);
     } else {
-      LOGGER.warning(String.format("Coverage data already exists for test '%s' in file '%s'", actualTestInfo.getTestName(), coverageFile.getPath()));
+      LOGGER.warning(String.format("Coverage data already exists for test '%s' with hash '%s'", actualTestInfo.getTestName(), actualTestInfo.getHash()));
     }
 
     super.testFinished(description);
@@ -249,7 +453,9 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
     LOGGER.info(String.format("JUnit stats: {tests=%d, ignored=%d, failed=%d}", result.getRunCount(), result.getIgnoreCount(), result.getFailureCount()));
     LOGGER.info(String.format("Listener stats: %s", testStats));
 
+    closeCoverageSink();
     dumpTestResults();
+    closeCoverageDumper();
 
     super.testRunFinished(result);
   }
@@ -273,12 +479,10 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
     LOGGER.info(String.format("%s %s", testName, status));
 
     if (status != TestNGStatus.STARTED && status != TestNGStatus.SKIPPED) {
-      File coverageFile = new File(outputDirectory, info.getHash() + '.' + Constants.COVERAGE_FILE_EXT);
-
-      if (dumpAndResetCoverage(coverageFile)) {
-        testResults.add(info);
+      if (dumpAndResetCoverage(info.getHash())) {
+        writeTestResult(info);
       } else {
-        LOGGER.warning(String.format("Coverage data already exists for test '%s' in file '%s'", info.getTestName(), coverageFile.getPath()));
+        LOGGER.warning(String.format("Coverage data already exists for test '%s' with hash '%s'", info.getTestName(), info.getHash()));
       }
     }
   }
@@ -321,6 +525,8 @@ public class CustomTestExecutionListener extends RunListener implements ITestLis
     LOGGER.info(String.format("TestNG stats: {tests=%d, skipped=%d, succeeded=%d, failed=%d, percent=%d, index=%d}",
         context.getAllTestMethods().length, context.getSkippedTests().size(), context.getPassedTests().size(), context.getFailedTests().size(), context.getFailedButWithinSuccessPercentageTests().size(), testIndex));
 
+    closeCoverageSink();
     dumpTestResults();
+    closeCoverageDumper();
   }
 }
\ No newline at end of file
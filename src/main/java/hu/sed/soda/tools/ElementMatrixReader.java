@@ -0,0 +1,144 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the test by code element coverage matrix written by the {@link ElementMatrixWriter}. The tables are loaded when the matrix is
+ * opened, the rows are decoded on demand from the memory-mapped file.
+ *
+ * The reader is immutable after it has been opened, so it can be shared between threads.
+ */
+public class ElementMatrixReader implements Closeable {
+
+  /**
+   * The memory-mapped content of the file.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The granularity of the elements, method or line.
+   */
+  private final String granularity;
+
+  private final String[] elementNames;
+
+  private final String[] testHashes;
+
+  private final String[] testNames;
+
+  /**
+   * The offset of the element set of each test.
+   */
+  private final int[] rowOffsets;
+
+  /**
+   * Opens a matrix.
+   *
+   * @param file
+   *          The matrix file.
+   *
+   * @throws IOException
+   */
+  public ElementMatrixReader(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(String.format("Coverage matrix '%s' is larger than 2GB.", file.getPath()));
+      }
+
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+    }
+
+    if (buffer.limit() < 10 || buffer.getInt() != ElementMatrixWriter.MAGIC) {
+      throw new IOException(String.format("File '%s' is not a coverage matrix.", file.getPath()));
+    }
+
+    short version = buffer.getShort();
+
+    if (version != ElementMatrixWriter.VERSION) {
+      throw new IOException(String.format("Unsupported coverage matrix version %d in '%s'.", version, file.getPath()));
+    }
+
+    granularity = IOUtils.readString(buffer);
+
+    elementNames = new String[buffer.getInt()];
+
+    for (int i = 0; i < elementNames.length; i++) {
+      elementNames[i] = IOUtils.readString(buffer);
+    }
+
+    int testCount = buffer.getInt(buffer.limit() - 4);
+
+    testHashes = new String[testCount];
+    testNames = new String[testCount];
+    rowOffsets = new int[testCount];
+
+    for (int i = 0; i < testCount; i++) {
+      testHashes[i] = IOUtils.readString(buffer);
+      testNames[i] = IOUtils.readString(buffer);
+
+      int length = buffer.getInt();
+
+      rowOffsets[i] = buffer.position();
+
+      IOUtils.seek(buffer, rowOffsets[i] + length);
+    }
+  }
+
+  public String getGranularity() {
+    return granularity;
+  }
+
+  /**
+   * @return The number of elements.
+   */
+  public int getElementCount() {
+    return elementNames.length;
+  }
+
+  public String getElementName(int elementId) {
+    return elementNames[elementId];
+  }
+
+  /**
+   * @return The number of tests.
+   */
+  public int getTestCount() {
+    return testHashes.length;
+  }
+
+  public String getTestHash(int testId) {
+    return testHashes[testId];
+  }
+
+  /**
+   * @return The full name of the test, or its hash if the name is unknown.
+   */
+  public String getTestName(int testId) {
+    return testNames[testId].isEmpty() ? testHashes[testId] : testNames[testId];
+  }
+
+  /**
+   * @param testId
+   *          The id of a test.
+   *
+   * @return The ids of the elements covered by the test in ascending order.
+   */
+  public int[] getCoveredElements(int testId) {
+    ByteBuffer input = buffer.duplicate();
+
+    IOUtils.seek(input, rowOffsets[testId]);
+
+    return CompressedBitmap.decodeValues(input);
+  }
+
+  @Override
+  public void close() {
+    // The mapping is released by the garbage collector.
+  }
+
+}
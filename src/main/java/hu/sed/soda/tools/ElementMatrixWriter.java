@@ -0,0 +1,133 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Writes the test by code element coverage matrix, which holds the methods or lines covered by every test.
+ *
+ * The file starts with a header and the element table (the names of the elements, the position of an element in the table is its id),
+ * which is followed by the rows of the tests. A row consists of the hash and the full name of the test, the length of its element set and
+ * the element set itself, encoded by {@link CompressedBitmap}. The number of rows is written at the end of the file, so the rows can be
+ * streamed one by one.
+ *
+ * The matrix is written into a temporary file next to the matrix file, which replaces the matrix file only when it has been
+ * {@link #finish() finished}. If the writer is closed without finishing it, the temporary file is deleted, so a failed export never leaves
+ * a truncated matrix behind.
+ */
+public class ElementMatrixWriter implements Closeable {
+
+  static final int MAGIC = 0x534f4445;
+
+  static final short VERSION = 1;
+
+  private final File file;
+
+  private final File tempFile;
+
+  private final DataOutputStream output;
+
+  private int testCount;
+
+  private boolean finished;
+
+  /**
+   * Creates the temporary file of the matrix and writes its header.
+   *
+   * @param file
+   *          The matrix file.
+   * @param granularity
+   *          The granularity of the elements, method or line.
+   * @param elementNames
+   *          The names of the elements in the order of their ids.
+   *
+   * @throws IOException
+   */
+  public ElementMatrixWriter(File file, String granularity, List<String> elementNames) throws IOException {
+    this.file = file;
+
+    tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+    } catch (IOException e) {
+      tempFile.delete();
+
+      throw e;
+    }
+
+    try {
+      output.writeInt(MAGIC);
+      output.writeShort(VERSION);
+      IOUtils.writeString(output, granularity);
+
+      output.writeInt(elementNames.size());
+
+      for (String elementName : elementNames) {
+        IOUtils.writeString(output, elementName);
+      }
+    } catch (IOException e) {
+      close();
+
+      throw e;
+    }
+  }
+
+  /**
+   * Appends the row of a test.
+   *
+   * @param testHash
+   *          The hash of the name of the test.
+   * @param testName
+   *          The full name of the test, empty if it is unknown.
+   * @param elements
+   *          The element set of the test, encoded by {@link CompressedBitmap}.
+   *
+   * @throws IOException
+   */
+  public void write(String testHash, String testName, byte[] elements) throws IOException {
+    IOUtils.writeString(output, testHash);
+    IOUtils.writeString(output, testName);
+
+    output.writeInt(elements.length);
+    output.write(elements);
+
+    testCount++;
+  }
+
+  /**
+   * Writes the number of rows at the end of the matrix and replaces the matrix file with it.
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException {
+    output.writeInt(testCount);
+    output.close();
+
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    finished = true;
+  }
+
+  /**
+   * Deletes the temporary file of the matrix if it has not been {@link #finish() finished}.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!finished) {
+      try {
+        output.close();
+      } finally {
+        tempFile.delete();
+      }
+    }
+  }
+
+}
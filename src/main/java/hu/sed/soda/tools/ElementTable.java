@@ -0,0 +1,164 @@
+package hu.sed.soda.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns an index to the classes, methods and lines of a {@link StructureCache}, shared by the coverage index and the exported coverage
+ * matrix. The classes are ordered by their names, so the indexes are reproducible. Classes with the same name share their elements.
+ *
+ * The table is immutable after it has been created, so it can be shared between threads.
+ */
+final class ElementTable {
+
+  /**
+   * The elements of the classes keyed by their JaCoCo class ids.
+   */
+  private final Map<Long, ClassElements> classElements = new HashMap<Long, ClassElements>();
+
+  private final List<String> elementNames = new ArrayList<String>();
+
+  /**
+   * Creates the elements of the classes.
+   *
+   * @param structureCache
+   *          The structure of the analyzed classes.
+   * @param withClasses
+   *          Whether the classes are elements.
+   * @param withMethods
+   *          Whether the methods are elements.
+   * @param withLines
+   *          Whether the lines are elements.
+   */
+  ElementTable(StructureCache structureCache, boolean withClasses, boolean withMethods, boolean withLines) {
+    List<ClassStructure> classes = new ArrayList<ClassStructure>(structureCache.getClasses());
+
+    Collections.sort(classes, new Comparator<ClassStructure>() {
+      @Override
+      public int compare(ClassStructure a, ClassStructure b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+
+    Map<String, Integer> elementIndexes = new HashMap<String, Integer>();
+
+    for (ClassStructure structure : classes) {
+      String className = structure.getName();
+      ClassElements elements = new ClassElements();
+
+      if (withClasses) {
+        elements.classElement = getElement(elementIndexes, className);
+      }
+
+      if (withMethods) {
+        List<MethodStructure> methods = structure.getMethods();
+
+        elements.methodElements = new int[methods.size()];
+
+        for (int i = 0; i < methods.size(); i++) {
+          MethodStructure method = methods.get(i);
+
+          elements.methodElements[i] = getElement(elementIndexes, CoverageIndexReader.getMethodElement(className, method.getName(), method.getDesc()));
+        }
+      }
+
+      if (withLines) {
+        elements.lines = structure.getLines();
+        elements.lineElements = new int[elements.lines.length];
+
+        for (int i = 0; i < elements.lines.length; i++) {
+          elements.lineElements[i] = getElement(elementIndexes, CoverageIndexReader.getLineElement(className, elements.lines[i]));
+        }
+      }
+
+      classElements.put(structure.getId(), elements);
+    }
+  }
+
+  private int getElement(Map<String, Integer> elementIndexes, String elementName) {
+    Integer index = elementIndexes.get(elementName);
+
+    if (index == null) {
+      index = elementNames.size();
+
+      elementIndexes.put(elementName, index);
+      elementNames.add(elementName);
+    }
+
+    return index;
+  }
+
+  /**
+   * @return The names of the elements in the order of their indexes.
+   */
+  List<String> getElementNames() {
+    return Collections.unmodifiableList(elementNames);
+  }
+
+  /**
+   * @return The number of elements.
+   */
+  int size() {
+    return elementNames.size();
+  }
+
+  /**
+   * @param classId
+   *          The JaCoCo id of a class.
+   *
+   * @return The elements of the class, or null if the class has not been analyzed.
+   */
+  ClassElements getClassElements(long classId) {
+    return classElements.get(classId);
+  }
+
+  /**
+   * The element indexes of a class.
+   */
+  static final class ClassElements {
+
+    private int classElement = -1;
+
+    /**
+     * The element of the method at the same position in the methods of the class.
+     */
+    private int[] methodElements;
+
+    /**
+     * The distinct lines of the class in ascending order.
+     */
+    private int[] lines;
+
+    /**
+     * The element of the line at the same position in {@link #lines}.
+     */
+    private int[] lineElements;
+
+    int getClassElement() {
+      return classElement;
+    }
+
+    /**
+     * @param method
+     *          The position of a method in the methods of the class.
+     */
+    int getMethodElement(int method) {
+      return methodElements[method];
+    }
+
+    /**
+     * @param line
+     *          A line of the class.
+     */
+    int getLineElement(int line) {
+      return lineElements[Arrays.binarySearch(lines, line)];
+    }
+
+  }
+
+}
@@ -0,0 +1,67 @@
+package hu.sed.soda.tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Stores the coverage data of every test in a separate <hash>.{@link Constants#COVERAGE_FILE_EXT exec} file.
+ */
+public class ExecFileSink implements CoverageSink {
+
+  /**
+   * Directory for coverage data.
+   */
+  private final File outputDirectory;
+
+  /**
+   * Creates a sink which writes into the given directory.
+   *
+   * @param outputDirectory
+   *          Directory for coverage data.
+   */
+  public ExecFileSink(File outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  /**
+   * @param testHash
+   *          The hash of the name of a test.
+   *
+   * @return The file in which the coverage data of the test is stored.
+   */
+  public File getCoverageFile(String testHash) {
+    return new File(outputDirectory, testHash + '.' + Constants.COVERAGE_FILE_EXT);
+  }
+
+  @Override
+  public boolean contains(String testHash) {
+    return getCoverageFile(testHash).exists();
+  }
+
+  @Override
+  public void write(String testHash, ExecFileLoader loader, TestMetrics metrics) throws IOException {
+    long start = System.nanoTime();
+    File coverageFile = getCoverageFile(testHash);
+
+    try {
+      loader.save(coverageFile, false);
+    } catch (IOException e) {
+      // A partial file would make the test look stored.
+      coverageFile.delete();
+
+      throw e;
+    }
+
+    if (metrics != null) {
+      metrics.setSave(System.nanoTime() - start, coverageFile.length());
+    }
+  }
+
+  @Override
+  public void close() {
+    // Every file is closed right after it has been written.
+  }
+
+}
@@ -0,0 +1,182 @@
+package hu.sed.soda.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.jacoco.core.data.ExecutionData;
+
+/**
+ * Exports the test by code element coverage matrix for SoDA directly from the raw coverage data, without generating the XML reports. The
+ * matrix can be read by the {@link ElementMatrixReader}.
+ *
+ * The elements are the methods or the lines of the classes, ordered by the names of the classes. The rows of the tests are computed by a
+ * pool of {@link #threads} workers, and they are written in the order of the tests as soon as they are ready. At most a few rows per
+ * worker are kept in memory, so the memory use does not depend on the number of tests.
+ */
+@Mojo(name = "export-matrix")
+public class ExportMatrixMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/coverage/raw")
+  private File inputDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/classes")
+  private File classesDirectory;
+
+  /**
+   * The matrix file.
+   */
+  @Parameter(property = "soda.export", defaultValue = "${project.build.directory}/jacoco/coverage/coverage.export")
+  private File exportFile;
+
+  /**
+   * The revision identifier of the actual program under test.
+   */
+  @Parameter(property = "soda.revision", defaultValue = "0")
+  private String revision;
+
+  /**
+   * The number of worker threads. Non-positive values mean the number of available processors.
+   */
+  @Parameter(property = "soda.threads", defaultValue = "0")
+  private int threads;
+
+  /**
+   * The granularity of the elements, method or line.
+   */
+  @Parameter(property = "soda.granularity", defaultValue = "method")
+  private String granularity;
+
+  private StructureCache structureCache;
+
+  private ElementTable elementTable;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    final boolean lineGranularity;
+
+    if ("line".equals(granularity)) {
+      lineGranularity = true;
+    } else if ("method".equals(granularity)) {
+      lineGranularity = false;
+    } else {
+      throw new MojoFailureException(String.format("Unknown granularity '%s', it must be method or line.", granularity));
+    }
+
+    int numOfThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+
+    try (final CoverageInput coverageInput = CoverageInput.open(inputDirectory)) {
+      Map<String, String> hashToTestMap = ResultFiles.readHashToTestMap(baseDirectory, revision);
+
+      structureCache = StructureCache.analyze(classesDirectory, new File(baseDirectory, Constants.STRUCTURE_CACHE_FILE));
+
+      elementTable = new ElementTable(structureCache, false, !lineGranularity, lineGranularity);
+
+      getLog().debug("elements = " + elementTable.size());
+
+      int numOfTests = coverageInput.size();
+
+      exportFile.getAbsoluteFile().getParentFile().mkdirs();
+
+      try (ElementMatrixWriter writer = new ElementMatrixWriter(exportFile, granularity, elementTable.getElementNames())) {
+        Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+        int written = 0;
+
+        for (int i = 0; i < numOfTests; i++) {
+          final int test = i;
+
+          pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+              return collectElements(coverageInput, test, lineGranularity);
+            }
+          }));
+
+          // The rows are written in order, the window of pending rows bounds the memory use.
+          while (pending.size() > 4 * numOfThreads || (i == numOfTests - 1 && !pending.isEmpty())) {
+            String testHash = coverageInput.getHash(written++);
+            String testName = hashToTestMap.get(testHash);
+
+            writer.write(testHash, testName == null ? "" : testName, IOUtils.waitFor(pending.poll(), "Matrix export"));
+          }
+        }
+
+        writer.finish();
+      }
+
+      getLog().info(String.format("Exported the coverage of %d tests on %d %s elements into %s (%d bytes).", numOfTests, elementTable.size(), granularity,
+          exportFile, exportFile.length()));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot export the coverage matrix.", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Collects the elements covered by a test.
+   *
+   * @return The encoded element set of the test.
+   *
+   * @throws IOException
+   */
+  private byte[] collectElements(CoverageInput coverageInput, int test, boolean lineGranularity) throws IOException {
+    BitSet covered = new BitSet();
+
+    for (ExecutionData data : coverageInput.load(test).getExecutionDataStore().getContents()) {
+      ClassStructure structure = structureCache.getClass(data.getId());
+
+      if (structure == null) {
+        continue;
+      }
+
+      ElementTable.ClassElements elements = elementTable.getClassElements(data.getId());
+      List<MethodStructure> methods = structure.getMethods();
+      boolean[] probes = data.getProbes();
+
+      for (int i = 0; i < methods.size(); i++) {
+        MethodStructure method = methods.get(i);
+
+        if (!method.isCovered(probes)) {
+          continue;
+        }
+
+        if (lineGranularity) {
+          for (int line : method.getCoveredLines(probes)) {
+            covered.set(elements.getLineElement(line));
+          }
+        } else {
+          covered.set(elements.getMethodElement(i));
+        }
+      }
+    }
+
+    int[] values = new int[covered.cardinality()];
+    int count = 0;
+
+    for (int element = covered.nextSetBit(0); element >= 0; element = covered.nextSetBit(element + 1)) {
+      values[count++] = element;
+    }
+
+    return CompressedBitmap.encode(values, count);
+  }
+
+}
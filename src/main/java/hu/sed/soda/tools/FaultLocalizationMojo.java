@@ -0,0 +1,271 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Ranks the methods and lines of the program by their suspiciousness, based on which failing and passing tests cover them.
+ *
+ * The coverage is read from the {@link CoverageIndexMojo coverage index}, the outcomes of the tests from the
+ * {@link Constants#RESULTS_FILE results file} of the revision. The failing and the passing tests are represented as bitsets, so the counts
+ * of an element are computed by intersecting its test set with them word by word. The elements are split into ranges which are processed
+ * by a pool of {@link #threads} workers.
+ *
+ * The ranking of every formula is written to &lt;formula&gt;.csv in the output directory. Elements which are not covered by any failing test
+ * are left out, their score is 0 by every formula.
+ */
+@Mojo(name = "localize")
+public class FaultLocalizationMojo extends AbstractMojo {
+
+  /**
+   * The outcomes of the failing tests.
+   */
+  private static final List<String> FAILED = Arrays.asList(JUnitStatus.FAILED.getOutcome(), TestNGStatus.FAILURED.getOutcome());
+
+  /**
+   * The outcomes of the passing tests.
+   */
+  private static final List<String> PASSED = Arrays.asList(JUnitStatus.SUCCEEDED.getOutcome(), TestNGStatus.SUCCEEDED.getOutcome(),
+      TestNGStatus.SUCCEEDED_WITHIN_FAILURE_PERCENTAGE.getOutcome());
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/sbfl")
+  private File outputDirectory;
+
+  @Parameter(property = "soda.index", defaultValue = "${project.build.directory}/jacoco/coverage/coverage.index")
+  private File indexFile;
+
+  /**
+   * The revision identifier of the actual program under test.
+   */
+  @Parameter(property = "soda.revision", defaultValue = "0")
+  private String revision;
+
+  /**
+   * The number of worker threads. Non-positive values mean the number of available processors.
+   */
+  @Parameter(property = "soda.threads", defaultValue = "0")
+  private int threads;
+
+  /**
+   * The comma separated names of the formulas: ochiai, tarantula, dstar.
+   */
+  @Parameter(property = "soda.formulas", defaultValue = "ochiai,tarantula,dstar")
+  private String formulas;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    List<SuspiciousnessFormula> selectedFormulas = new ArrayList<SuspiciousnessFormula>();
+
+    try {
+      for (String name : formulas.split(",")) {
+        selectedFormulas.add(SuspiciousnessFormula.fromName(name));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new MojoFailureException(e.getMessage());
+    }
+
+    if (!indexFile.exists()) {
+      throw new MojoFailureException(String.format("The coverage index '%s' does not exist, it has to be built by the index goal.", indexFile));
+    }
+
+    try (CoverageIndexReader index = new CoverageIndexReader(indexFile)) {
+      if (!revision.equals(index.getRevision())) {
+        throw new MojoFailureException(String.format("The coverage index '%s' has been built from revision %s instead of revision %s.", indexFile,
+            index.getRevision(), revision));
+      }
+
+      Map<String, String> outcomes = readOutcomes();
+
+      int wordCount = (index.getTestCount() + 63) >>> 6;
+
+      long[] failedTests = new long[wordCount];
+      long[] passedTests = new long[wordCount];
+
+      int totalFailed = 0;
+      int totalPassed = 0;
+
+      for (int test = 0; test < index.getTestCount(); test++) {
+        String outcome = outcomes.get(index.getTestName(test));
+
+        if (FAILED.contains(outcome)) {
+          failedTests[test >>> 6] |= 1L << test;
+          totalFailed++;
+        } else if (PASSED.contains(outcome)) {
+          passedTests[test >>> 6] |= 1L << test;
+          totalPassed++;
+        }
+      }
+
+      getLog().info(String.format("%d failing and %d passing tests of %d.", totalFailed, totalPassed, index.getTestCount()));
+
+      if (totalFailed == 0) {
+        getLog().warn("There are no failing tests, the elements cannot be ranked.");
+
+        return;
+      }
+
+      int[] ef = new int[index.getElementCount()];
+      int[] ep = new int[index.getElementCount()];
+
+      countTests(index, failedTests, passedTests, ef, ep);
+
+      outputDirectory.mkdirs();
+
+      for (SuspiciousnessFormula formula : selectedFormulas) {
+        writeRanking(index, formula, ef, ep, totalFailed, totalPassed);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot rank the elements.", e);
+    }
+  }
+
+  /**
+   * Reads the outcomes of the tests. If a test has been recorded several times its last outcome is used.
+   *
+   * @return The outcomes keyed by the full names of the tests.
+   *
+   * @throws IOException
+   */
+  private Map<String, String> readOutcomes() throws IOException {
+    Map<String, String> outcomes = new HashMap<String, String>();
+
+    for (File resultsFile : ResultFiles.getFiles(baseDirectory, revision, Constants.RESULTS_FILE)) {
+      try (BufferedReader input = new BufferedReader(new FileReader(resultsFile))) {
+        String line = null;
+
+        while ((line = input.readLine()) != null) {
+          int index = line.indexOf(": ");
+
+          if (index > 0) {
+            outcomes.put(line.substring(index + 2), line.substring(0, index));
+          }
+        }
+      }
+    }
+
+    return outcomes;
+  }
+
+  /**
+   * Counts the failing and passing tests covering the method and line elements.
+   *
+   * @throws IOException
+   */
+  private void countTests(final CoverageIndexReader index, final long[] failedTests, final long[] passedTests, final int[] ef, final int[] ep) throws IOException {
+    final int numOfElements = index.getElementCount();
+    final int numOfThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    final int rangeSize = Math.max(1, (numOfElements + numOfThreads - 1) / numOfThreads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+      for (int start = 0; start < numOfElements; start += rangeSize) {
+        final int first = start;
+        final int last = Math.min(numOfElements, start + rangeSize);
+
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int element = first; element < last; element++) {
+              if (isRanked(index.getElementName(element))) {
+                ef[element] = index.countCoveringTests(element, failedTests);
+
+                if (ef[element] > 0) {
+                  ep[element] = index.countCoveringTests(element, passedTests);
+                }
+              }
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        IOUtils.waitFor(future, "Fault localization");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return True for the method and line elements, false for the classes.
+   */
+  private static boolean isRanked(String elementName) {
+    return elementName.indexOf('#') >= 0 || elementName.indexOf(':') >= 0;
+  }
+
+  /**
+   * Writes the elements covered by failing tests in descending order of their scores. Ties are ordered by the names of the elements.
+   *
+   * @throws IOException
+   */
+  private void writeRanking(final CoverageIndexReader index, SuspiciousnessFormula formula, int[] ef, int[] ep, int totalFailed, int totalPassed) throws IOException {
+    List<Integer> elements = new ArrayList<Integer>();
+
+    for (int element = 0; element < ef.length; element++) {
+      if (ef[element] > 0) {
+        elements.add(element);
+      }
+    }
+
+    final double[] scores = new double[ef.length];
+
+    for (int element : elements) {
+      scores[element] = formula.score(ef[element], ep[element], totalFailed - ef[element], totalPassed - ep[element]);
+    }
+
+    Collections.sort(elements, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        int result = Double.compare(scores[b], scores[a]);
+
+        return result != 0 ? result : index.getElementName(a).compareTo(index.getElementName(b));
+      }
+    });
+
+    File rankingFile = new File(outputDirectory, formula.getName() + ".csv");
+
+    try (BufferedWriter output = new BufferedWriter(new FileWriter(rankingFile))) {
+      output.write("rank;element;score;ef;ep;nf;np\n");
+
+      int rank = 0;
+
+      for (int element : elements) {
+        output.write(String.format(Locale.ROOT, "%d;%s;%.6f;%d;%d;%d;%d\n", ++rank, index.getElementName(element), scores[element], ef[element], ep[element],
+            totalFailed - ef[element], totalPassed - ep[element]));
+      }
+    }
+
+    getLog().info(String.format("Ranked %d elements by %s into %s.", elements.size(), formula.getName(), rankingFile));
+  }
+
+}
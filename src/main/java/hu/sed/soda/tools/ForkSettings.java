@@ -0,0 +1,72 @@
+package hu.sed.soda.tools;
+
+import java.io.File;
+
+/**
+ * The settings of a test JVM, read from system properties. When Surefire runs the tests in several forks, every fork can be given its own
+ * JaCoCo agent port and fork id (e.g. -Dsoda.fork=${surefire.forkNumber}), so the forks do not share their agents and their output files.
+ */
+public final class ForkSettings {
+
+  private ForkSettings() {
+  }
+
+  /**
+   * @return The directory of the outputs, set by {@link Constants#BASE_DIR_PROPERTY}.
+   */
+  public static File getBaseDirectory() {
+    return new File(System.getProperty(Constants.BASE_DIR_PROPERTY, Constants.BASE_DIR));
+  }
+
+  /**
+   * @return The directory for coverage data inside the {@link #getBaseDirectory() base directory}.
+   */
+  public static File getCoverageDirectory() {
+    return new File(new File(getBaseDirectory(), "coverage"), "raw");
+  }
+
+  /**
+   * @return The version identifier of the program under test, set by {@link Constants#REVISION_PROPERTY}.
+   */
+  public static String getRevision() {
+    return System.getProperty(Constants.REVISION_PROPERTY, "0");
+  }
+
+  /**
+   * @return The address of the JaCoCo agent, set by {@link Constants#AGENT_ADDRESS_PROPERTY}.
+   */
+  public static String getAgentAddress() {
+    return System.getProperty(Constants.AGENT_ADDRESS_PROPERTY, Constants.JACOCO_AGENT_ADDRESS);
+  }
+
+  /**
+   * @return The port of the JaCoCo agent, set by {@link Constants#AGENT_PORT_PROPERTY}.
+   */
+  public static int getAgentPort() {
+    return Integer.getInteger(Constants.AGENT_PORT_PROPERTY, Constants.JACOCO_AGENT_PORT);
+  }
+
+  /**
+   * @return The id of the actual fork set by {@link Constants#FORK_PROPERTY} or null if the tests are not forked.
+   */
+  public static String getForkId() {
+    String forkId = System.getProperty(Constants.FORK_PROPERTY);
+
+    return forkId == null || forkId.isEmpty() ? null : forkId;
+  }
+
+  /**
+   * Creates the name of the shard of a file which belongs to the actual fork.
+   * 
+   * @param fileName
+   *          The name of the shared file.
+   * 
+   * @return The name of the shard, i.e. fileName.f&lt;fork id&gt;, or fileName itself if the tests are not forked.
+   */
+  public static String getShardName(String fileName) {
+    String forkId = getForkId();
+
+    return forkId == null ? fileName : String.format("%s%s%s", fileName, Constants.SHARD_SEPARATOR, forkId);
+  }
+
+}
@@ -0,0 +1,180 @@
+package hu.sed.soda.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers shared by the binary file formats and the parallel goals of the plugin.
+ *
+ * The strings of the binary files are stored as the length of their UTF-8 encoding followed by the encoded bytes, null is stored as the
+ * length -1.
+ */
+final class IOUtils {
+
+  private IOUtils() {
+  }
+
+  /**
+   * Writes a string which may be null.
+   *
+   * @return The number of bytes written.
+   *
+   * @throws IOException
+   */
+  static int writeString(DataOutput output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+
+      return 4;
+    }
+
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+    output.writeInt(bytes.length);
+    output.write(bytes);
+
+    return 4 + bytes.length;
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutput, String)}.
+   *
+   * @throws IOException
+   */
+  static String readString(DataInputStream input) throws IOException {
+    int length = readCount(input, 1);
+
+    if (length < 0) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+
+    input.readFully(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutput, String)} from the position of a buffer.
+   */
+  static String readString(ByteBuffer input) {
+    int length = input.getInt();
+
+    if (length < 0) {
+      return null;
+    }
+
+    if (length > input.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    byte[] bytes = new byte[length];
+
+    input.get(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the size of a table and checks it against the bytes left in the input, so a corrupt size cannot allocate a huge array. The input
+   * must be able to tell the exact number of the bytes left, e.g. it reads a byte array.
+   *
+   * @param elementSize
+   *          The least number of bytes an element of the table takes.
+   *
+   * @return The size, which may be negative, e.g. for a null table.
+   *
+   * @throws IOException
+   *           If the table cannot fit into the rest of the input.
+   */
+  static int readCount(DataInputStream input, int elementSize) throws IOException {
+    int count = input.readInt();
+
+    if ((long) count * elementSize > input.available()) {
+      throw new IOException(String.format("Invalid size %d, only %d bytes are left.", count, input.available()));
+    }
+
+    return count;
+  }
+
+  /**
+   * Moves the position of a buffer. The call goes through {@link Buffer}, so the classes run on Java 8 even if they have been compiled by a
+   * newer JDK, where {@link ByteBuffer} overrides the method with a covariant return type.
+   */
+  static void seek(ByteBuffer input, int position) {
+    ((Buffer) input).position(position);
+  }
+
+  /**
+   * Creates a temporary file in the directory of a file, so the file can be written completely before it replaces the previous version.
+   *
+   * @param file
+   *          The file to be written.
+   *
+   * @return The temporary file, which has to be moved onto the file by {@link #replace(File, File)} or deleted.
+   *
+   * @throws IOException
+   */
+  static File createTempFile(File file) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+
+    directory.mkdirs();
+
+    return File.createTempFile(file.getName(), ".tmp", directory);
+  }
+
+  /**
+   * Moves a completely written temporary file onto a file.
+   *
+   * @throws IOException
+   */
+  static void replace(File tempFile, File file) throws IOException {
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Waits for a worker task and rethrows its failure.
+   *
+   * @param future
+   *          The result of the task.
+   * @param taskName
+   *          The name of the work the task belongs to, which is reported if the waiting is interrupted.
+   *
+   * @return The result of the task.
+   *
+   * @throws IOException
+   */
+  static <T> T waitFor(Future<T> future, String taskName) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new IOException(taskName + " has been interrupted.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new IOException(cause);
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+package hu.sed.soda.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.jacoco.agent.rt.IAgent;
+import org.jacoco.agent.rt.RT;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Collects execution data directly from the JaCoCo agent which is attached to the actual JVM, without any network round-trip.
+ */
+public class LocalCoverageDumper implements CoverageDumper {
+
+  /**
+   * The runtime API of the agent.
+   */
+  private final IAgent agent;
+
+  /**
+   * Creates a dumper for the agent of the actual JVM.
+   * 
+   * @throws IllegalStateException
+   *           If no agent is attached to the JVM.
+   */
+  public LocalCoverageDumper() {
+    this(RT.getAgent());
+  }
+
+  /**
+   * Creates a dumper for the given agent.
+   * 
+   * @param agent
+   *          The runtime API of an agent.
+   */
+  public LocalCoverageDumper(IAgent agent) {
+    this.agent = agent;
+  }
+
+  @Override
+  public void reset() {
+    agent.reset();
+  }
+
+  @Override
+  public ExecFileLoader dumpAndReset() throws IOException {
+    ExecFileLoader loader = new ExecFileLoader();
+    loader.load(new ByteArrayInputStream(agent.getExecutionData(true)));
+
+    return loader;
+  }
+
+  @Override
+  public void close() {
+    // Nothing to release.
+  }
+
+}
@@ -0,0 +1,264 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.report.DirectorySourceFileLocator;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.xml.XMLFormatter;
+
+/**
+ * Merges the coverage data of all tests into the coverage of the whole test suite. The result is written both as an exec file, which can be
+ * used by the JaCoCo tools, and as a JaCoCo XML report.
+ *
+ * The tests are merged by a parallel tree reduction on a pool of {@link #threads} workers: the ranges of at most {@link #LEAF_SIZE} tests
+ * are merged one by one, then the results of the neighbouring ranges are merged pairwise by OR-ing their probe arrays. The sessions of the
+ * tests are reduced to a single session from the earliest start to the latest dump. Only the partial results of the ranges being merged
+ * are held in memory, which are bounded by the number of classes.
+ */
+@Mojo(name = "merge")
+public class MergeMojo extends AbstractMojo {
+
+  /**
+   * The number of tests which are merged sequentially by a single task.
+   */
+  private static final int LEAF_SIZE = 16;
+
+  /**
+   * The id of the session of the merged coverage.
+   */
+  private static final String MERGED_SESSION = "soda-merged";
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/coverage/raw")
+  private File inputDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/classes")
+  private File classesDirectory;
+
+  @Parameter(defaultValue = "${project.build.sourceDirectory}")
+  private File sourceDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  /**
+   * The merged exec file.
+   */
+  @Parameter(property = "soda.mergedFile", defaultValue = "${project.build.directory}/jacoco/coverage/merged.exec")
+  private File mergedFile;
+
+  /**
+   * The XML report of the merged coverage.
+   */
+  @Parameter(property = "soda.mergedReport", defaultValue = "${project.build.directory}/jacoco/coverage/merged.xml")
+  private File reportFile;
+
+  /**
+   * The number of worker threads. Non-positive values mean the number of available processors.
+   */
+  @Parameter(property = "soda.threads", defaultValue = "0")
+  private int threads;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    long startTime = System.currentTimeMillis();
+    int numOfThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+    ForkJoinPool pool = new ForkJoinPool(numOfThreads);
+
+    try (CoverageInput coverageInput = CoverageInput.open(inputDirectory)) {
+      if (coverageInput.size() == 0) {
+        getLog().warn("There is no coverage data to merge.");
+
+        return;
+      }
+
+      MergeResult result = pool.invoke(new MergeTask(coverageInput, 0, coverageInput.size()));
+
+      ExecFileLoader merged = new ExecFileLoader();
+
+      // The inputs may have no session infos, e.g. the matrix containers of the first version, the time of the merge is recorded then.
+      merged.getSessionInfoStore().visitSessionInfo(result.session != null ? result.session : new SessionInfo(MERGED_SESSION, startTime,
+          System.currentTimeMillis()));
+      result.executionData.accept(merged.getExecutionDataStore());
+
+      File tempFile = IOUtils.createTempFile(mergedFile);
+
+      try {
+        merged.save(tempFile, false);
+
+        IOUtils.replace(tempFile, mergedFile);
+      } finally {
+        tempFile.delete();
+      }
+
+      getLog().info(String.format("Merged the coverage of %d tests into %s.", coverageInput.size(), mergedFile));
+
+      createReport(merged);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot merge the coverage data.", e);
+    } catch (IllegalStateException e) {
+      // The IOExceptions of the tasks are wrapped (and may be wrapped again by the pool), the incompatible execution data of a class is
+      // reported by JaCoCo like this.
+      Throwable cause = e;
+
+      while (cause != null && !(cause instanceof IOException)) {
+        cause = cause.getCause();
+      }
+
+      throw new MojoExecutionException("Cannot merge the coverage data.", cause != null ? cause : e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes the XML report of the merged coverage and logs its totals.
+   *
+   * @throws IOException
+   */
+  private void createReport(ExecFileLoader merged) throws IOException {
+    StructureCache structureCache = StructureCache.analyze(classesDirectory, new File(baseDirectory, Constants.STRUCTURE_CACHE_FILE));
+
+    CoverageBuilder coverageBuilder = new CoverageBuilder();
+
+    structureCache.analyze(merged.getExecutionDataStore(), coverageBuilder);
+
+    IBundleCoverage bundleCoverage = coverageBuilder.getBundle("merged");
+
+    File tempFile = IOUtils.createTempFile(reportFile);
+
+    try {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+        XMLFormatter xmlFormatter = new XMLFormatter();
+        xmlFormatter.setOutputEncoding("UTF-8");
+
+        IReportVisitor visitor = xmlFormatter.createVisitor(out);
+        visitor.visitInfo(merged.getSessionInfoStore().getInfos(), merged.getExecutionDataStore().getContents());
+        visitor.visitBundle(bundleCoverage, new DirectorySourceFileLocator(sourceDirectory, "UTF-8", 4));
+        visitor.visitEnd();
+      }
+
+      IOUtils.replace(tempFile, reportFile);
+    } finally {
+      tempFile.delete();
+    }
+
+    getLog().info(String.format("Total coverage: %s instructions, %s branches, %s lines, %s methods, written to %s.",
+        format(bundleCoverage.getInstructionCounter()), format(bundleCoverage.getBranchCounter()), format(bundleCoverage.getLineCounter()),
+        format(bundleCoverage.getMethodCounter()), reportFile));
+  }
+
+  private static String format(ICounter counter) {
+    return String.format("%d/%d", counter.getCoveredCount(), counter.getTotalCount());
+  }
+
+  /**
+   * The merged coverage data of a range of tests.
+   */
+  private static class MergeResult {
+
+    private final ExecutionDataStore executionData = new ExecutionDataStore();
+
+    private SessionInfo session;
+
+    /**
+     * Merges the coverage data of a test into the result.
+     */
+    void add(ExecFileLoader loader) {
+      loader.getExecutionDataStore().accept(executionData);
+
+      if (!loader.getSessionInfoStore().isEmpty()) {
+        add(loader.getSessionInfoStore().getMerged(MERGED_SESSION));
+      }
+    }
+
+    /**
+     * Merges another result into this one.
+     */
+    void add(MergeResult other) {
+      other.executionData.accept(executionData);
+
+      if (other.session != null) {
+        add(other.session);
+      }
+    }
+
+    private void add(SessionInfo other) {
+      if (session == null) {
+        session = other;
+      } else {
+        session = new SessionInfo(MERGED_SESSION, Math.min(session.getStartTimeStamp(), other.getStartTimeStamp()),
+            Math.max(session.getDumpTimeStamp(), other.getDumpTimeStamp()));
+      }
+    }
+
+  }
+
+  /**
+   * Merges the coverage data of a range of tests.
+   */
+  private static class MergeTask extends RecursiveTask<MergeResult> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient CoverageInput coverageInput;
+
+    private final int first;
+
+    private final int last;
+
+    MergeTask(CoverageInput coverageInput, int first, int last) {
+      this.coverageInput = coverageInput;
+      this.first = first;
+      this.last = last;
+    }
+
+    @Override
+    protected MergeResult compute() {
+      if (last - first <= LEAF_SIZE) {
+        try {
+          MergeResult result = new MergeResult();
+
+          for (int test = first; test < last; test++) {
+            result.add(coverageInput.load(test));
+          }
+
+          return result;
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      int middle = (first + last) >>> 1;
+
+      MergeTask right = new MergeTask(coverageInput, middle, last);
+
+      right.fork();
+
+      MergeResult result = new MergeTask(coverageInput, first, middle).compute();
+
+      result.add(right.join());
+
+      return result;
+    }
+
+  }
+
+}
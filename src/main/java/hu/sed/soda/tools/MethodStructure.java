@@ -0,0 +1,323 @@
+package hu.sed.soda.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+
+/**
+ * The coverage independent structure of a method, i.e. its instructions, the control flow edges between them and the positions of the probes.
+ * The structure is recorded once by the {@link MethodStructureAnalyzer} and can be projected onto arbitrary probe arrays afterwards.
+ */
+public class MethodStructure {
+
+  /**
+   * Value of a predecessor or probe target which denotes no instruction.
+   */
+  static final int NO_INSTRUCTION = -1;
+
+  /**
+   * The name of the method.
+   */
+  private final String name;
+
+  /**
+   * The descriptor of the method.
+   */
+  private final String desc;
+
+  /**
+   * The generic signature of the method, may be null.
+   */
+  private final String signature;
+
+  /**
+   * The first and the last line of the method, -1 if there is no debug information.
+   */
+  private final int firstLine;
+
+  private final int lastLine;
+
+  /**
+   * The source line of each instruction.
+   */
+  private final int[] lines;
+
+  /**
+   * The index of the predecessor of each instruction or {@link #NO_INSTRUCTION}.
+   */
+  private final int[] predecessors;
+
+  /**
+   * The number of outgoing branches of each instruction.
+   */
+  private final int[] branches;
+
+  /**
+   * The identifiers of the probes which belong to the method.
+   */
+  private final int[] probeIds;
+
+  /**
+   * The instruction which is marked as executed by the probe at the same position in {@link #probeIds}.
+   */
+  private final int[] probeInstructions;
+
+  /**
+   * Creates a method structure.
+   *
+   * @param name
+   *          The name of the method.
+   * @param desc
+   *          The descriptor of the method.
+   * @param signature
+   *          The generic signature of the method.
+   * @param firstLine
+   *          The first line of the method.
+   * @param lastLine
+   *          The last line of the method.
+   * @param lines
+   *          The source line of each instruction.
+   * @param predecessors
+   *          The predecessor of each instruction.
+   * @param branches
+   *          The number of branches of each instruction.
+   * @param probeIds
+   *          The identifiers of the probes of the method.
+   * @param probeInstructions
+   *          The instructions belonging to the probes.
+   */
+  public MethodStructure(String name, String desc, String signature, int firstLine, int lastLine, int[] lines, int[] predecessors, int[] branches, int[] probeIds,
+      int[] probeInstructions) {
+    this.name = name;
+    this.desc = desc;
+    this.signature = signature;
+    this.firstLine = firstLine;
+    this.lastLine = lastLine;
+    this.lines = lines;
+    this.predecessors = predecessors;
+    this.branches = branches;
+    this.probeIds = probeIds;
+    this.probeInstructions = probeInstructions;
+  }
+
+  /**
+   * Reads a method structure written by {@link #write(DataOutputStream)}.
+   *
+   * @param input
+   *          The input stream.
+   *
+   * @return The method structure.
+   *
+   * @throws IOException
+   */
+  static MethodStructure read(DataInputStream input) throws IOException {
+    String name = IOUtils.readString(input);
+    String desc = IOUtils.readString(input);
+    String signature = IOUtils.readString(input);
+    int firstLine = input.readInt();
+    int lastLine = input.readInt();
+
+    int instructionCount = IOUtils.readCount(input, 12);
+
+    int[] lines = readInts(input, instructionCount);
+    int[] predecessors = readInts(input, instructionCount);
+    int[] branches = readInts(input, instructionCount);
+
+    int probeCount = IOUtils.readCount(input, 8);
+
+    int[] probeIds = readInts(input, probeCount);
+    int[] probeInstructions = readInts(input, probeCount);
+
+    return new MethodStructure(name, desc, signature, firstLine, lastLine, lines, predecessors, branches, probeIds, probeInstructions);
+  }
+
+  /**
+   * Writes the method structure, so it can be restored without analyzing the class again.
+   *
+   * @param output
+   *          The output stream.
+   *
+   * @throws IOException
+   */
+  void write(DataOutputStream output) throws IOException {
+    IOUtils.writeString(output, name);
+    IOUtils.writeString(output, desc);
+    IOUtils.writeString(output, signature);
+    output.writeInt(firstLine);
+    output.writeInt(lastLine);
+
+    output.writeInt(lines.length);
+
+    writeInts(output, lines);
+    writeInts(output, predecessors);
+    writeInts(output, branches);
+
+    output.writeInt(probeIds.length);
+
+    writeInts(output, probeIds);
+    writeInts(output, probeInstructions);
+  }
+
+  private static int[] readInts(DataInputStream input, int count) throws IOException {
+    int[] values = new int[count];
+
+    for (int i = 0; i < count; i++) {
+      values[i] = input.readInt();
+    }
+
+    return values;
+  }
+
+  private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+    for (int value : values) {
+      output.writeInt(value);
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getDesc() {
+    return desc;
+  }
+
+  public String getSignature() {
+    return signature;
+  }
+
+  public int getFirstLine() {
+    return firstLine;
+  }
+
+  public int getLastLine() {
+    return lastLine;
+  }
+
+  /**
+   * @return The number of instructions of the method.
+   */
+  public int getInstructionCount() {
+    return lines.length;
+  }
+
+  /**
+   * Calculates the number of covered branches of each instruction in the same way as JaCoCo does, i.e. an instruction is covered if a probe
+   * is reached through it, and every covered successor counts as a covered branch.
+   *
+   * @param probes
+   *          The probe array of the class, may be null.
+   *
+   * @return The number of covered branches of each instruction.
+   */
+  public int[] getCoveredBranches(boolean[] probes) {
+    int[] coveredBranches = new int[lines.length];
+
+    if (probes != null) {
+      for (int i = 0; i < probeIds.length; i++) {
+        if (probes[probeIds[i]]) {
+          int insn = probeInstructions[i];
+
+          while (insn != NO_INSTRUCTION && coveredBranches[insn]++ == 0) {
+            insn = predecessors[insn];
+          }
+        }
+      }
+    }
+
+    return coveredBranches;
+  }
+
+  /**
+   * @param probes
+   *          The probe array of the class, may be null.
+   *
+   * @return True if at least one instruction of the method is covered.
+   */
+  public boolean isCovered(boolean[] probes) {
+    if (probes != null) {
+      for (int probeId : probeIds) {
+        if (probes[probeId]) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @return The distinct source lines of the instructions in ascending order, empty if there is no debug information.
+   */
+  public int[] getLines() {
+    return getDistinctLines(null);
+  }
+
+  /**
+   * Calculates the source lines which have at least one covered instruction, i.e. the lines which JaCoCo reports as fully or partly
+   * covered.
+   *
+   * @param probes
+   *          The probe array of the class, may be null.
+   *
+   * @return The distinct covered lines in ascending order.
+   */
+  public int[] getCoveredLines(boolean[] probes) {
+    return getDistinctLines(getCoveredBranches(probes));
+  }
+
+  private int[] getDistinctLines(int[] coveredBranches) {
+    int[] result = new int[lines.length];
+    int count = 0;
+
+    for (int i = 0; i < lines.length; i++) {
+      if (lines[i] >= 0 && (coveredBranches == null || coveredBranches[i] > 0)) {
+        result[count++] = lines[i];
+      }
+    }
+
+    Arrays.sort(result, 0, count);
+
+    int distinct = 0;
+
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || result[distinct - 1] != result[i]) {
+        result[distinct++] = result[i];
+      }
+    }
+
+    return Arrays.copyOf(result, distinct);
+  }
+
+  /**
+   * Creates the coverage node of the method for the given probes.
+   *
+   * @param probes
+   *          The probe array of the class, may be null.
+   *
+   * @return The coverage of the method.
+   */
+  public MethodCoverageImpl createCoverage(boolean[] probes) {
+    MethodCoverageImpl coverage = new MethodCoverageImpl(name, desc, signature);
+    int[] coveredBranches = getCoveredBranches(probes);
+
+    coverage.ensureCapacity(firstLine, lastLine);
+
+    for (int i = 0; i < lines.length; i++) {
+      ICounter instructions = coveredBranches[i] == 0 ? CounterImpl.COUNTER_1_0 : CounterImpl.COUNTER_0_1;
+      ICounter branchCounter = branches[i] > 1 ? CounterImpl.getInstance(branches[i] - coveredBranches[i], coveredBranches[i]) : CounterImpl.COUNTER_0_0;
+
+      coverage.increment(instructions, branchCounter, lines[i]);
+    }
+
+    coverage.incrementMethodCounter();
+
+    return coverage;
+  }
+
+}
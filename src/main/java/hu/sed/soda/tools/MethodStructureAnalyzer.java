@@ -0,0 +1,322 @@
+package hu.sed.soda.tools;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+
+/**
+ * Records the {@link MethodStructure structure} of a method. The control flow is followed exactly as JaCoCo's own method analyzer does, but
+ * instead of evaluating a single probe array the instructions, edges and probe positions are stored.
+ */
+public abstract class MethodStructureAnalyzer extends MethodProbesVisitor {
+
+  /**
+   * An instruction under construction.
+   */
+  private static class Insn {
+
+    final int index;
+
+    final int line;
+
+    int branches;
+
+    Insn predecessor;
+
+    Insn(int index, int line) {
+      this.index = index;
+      this.line = line;
+    }
+
+    void setPredecessor(Insn predecessor) {
+      this.predecessor = predecessor;
+      predecessor.branches++;
+    }
+  }
+
+  /**
+   * A jump whose target is resolved at the end of the method.
+   */
+  private static class Jump {
+
+    final Insn source;
+
+    final Label target;
+
+    Jump(Insn source, Label target) {
+      this.source = source;
+      this.target = target;
+    }
+  }
+
+  private final String name;
+
+  private final String desc;
+
+  private final String signature;
+
+  private int currentLine = -1;
+
+  private int firstLine = -1;
+
+  private int lastLine = -1;
+
+  private final List<Label> currentLabel = new ArrayList<Label>(2);
+
+  private final Map<Label, Insn> labelInstructions = new IdentityHashMap<Label, Insn>();
+
+  private final List<Insn> instructions = new ArrayList<Insn>();
+
+  private final List<Jump> jumps = new ArrayList<Jump>();
+
+  private final List<int[]> probes = new ArrayList<int[]>();
+
+  private Insn lastInsn;
+
+  /**
+   * Creates a method structure analyzer.
+   *
+   * @param name
+   *          The name of the method.
+   * @param desc
+   *          The descriptor of the method.
+   * @param signature
+   *          The generic signature of the method.
+   */
+  public MethodStructureAnalyzer(String name, String desc, String signature) {
+    this.name = name;
+    this.desc = desc;
+    this.signature = signature;
+  }
+
+  /**
+   * Called with the recorded structure when the method has been visited.
+   *
+   * @param structure
+   *          The structure of the method.
+   */
+  protected abstract void visitStructure(MethodStructure structure);
+
+  @Override
+  public void visitLabel(Label label) {
+    currentLabel.add(label);
+
+    if (!LabelInfo.isSuccessor(label)) {
+      lastInsn = null;
+    }
+  }
+
+  @Override
+  public void visitLineNumber(int line, Label start) {
+    currentLine = line;
+
+    if (firstLine > line || lastLine == -1) {
+      firstLine = line;
+    }
+
+    if (lastLine < line) {
+      lastLine = line;
+    }
+  }
+
+  private void visitInsn() {
+    Insn insn = new Insn(instructions.size(), currentLine);
+
+    instructions.add(insn);
+
+    if (lastInsn != null) {
+      insn.setPredecessor(lastInsn);
+    }
+
+    for (Label label : currentLabel) {
+      labelInstructions.put(label, insn);
+    }
+
+    currentLabel.clear();
+
+    lastInsn = insn;
+  }
+
+  @Override
+  public void visitInsn(int opcode) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitIntInsn(int opcode, int operand) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitVarInsn(int opcode, int var) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitTypeInsn(int opcode, String type) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitJumpInsn(int opcode, Label label) {
+    visitInsn();
+
+    jumps.add(new Jump(lastInsn, label));
+  }
+
+  @Override
+  public void visitLdcInsn(Object cst) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitIincInsn(int var, int increment) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+    visitSwitchInsn(dflt, labels);
+  }
+
+  @Override
+  public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+    visitSwitchInsn(dflt, labels);
+  }
+
+  private void visitSwitchInsn(Label dflt, Label[] labels) {
+    visitInsn();
+
+    LabelInfo.resetDone(labels);
+
+    jumps.add(new Jump(lastInsn, dflt));
+    LabelInfo.setDone(dflt);
+
+    for (Label label : labels) {
+      if (!LabelInfo.isDone(label)) {
+        jumps.add(new Jump(lastInsn, label));
+        LabelInfo.setDone(label);
+      }
+    }
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(String desc, int dims) {
+    visitInsn();
+  }
+
+  @Override
+  public void visitProbe(int probeId) {
+    addProbe(probeId);
+
+    lastInsn = null;
+  }
+
+  @Override
+  public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+    visitInsn();
+
+    addProbe(probeId);
+  }
+
+  @Override
+  public void visitInsnWithProbe(int opcode, int probeId) {
+    visitInsn();
+
+    addProbe(probeId);
+  }
+
+  @Override
+  public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+    visitSwitchInsnWithProbes(dflt, labels);
+  }
+
+  @Override
+  public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+    visitSwitchInsnWithProbes(dflt, labels);
+  }
+
+  private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+    visitInsn();
+
+    LabelInfo.resetDone(dflt);
+    LabelInfo.resetDone(labels);
+
+    visitSwitchTarget(dflt);
+
+    for (Label label : labels) {
+      visitSwitchTarget(label);
+    }
+  }
+
+  private void visitSwitchTarget(Label label) {
+    int probeId = LabelInfo.getProbeId(label);
+
+    if (!LabelInfo.isDone(label)) {
+      if (probeId == LabelInfo.NO_PROBE) {
+        jumps.add(new Jump(lastInsn, label));
+      } else {
+        addProbe(probeId);
+      }
+
+      LabelInfo.setDone(label);
+    }
+  }
+
+  private void addProbe(int probeId) {
+    lastInsn.branches++;
+
+    probes.add(new int[] { probeId, lastInsn.index });
+  }
+
+  @Override
+  public void visitEnd() {
+    for (Jump jump : jumps) {
+      labelInstructions.get(jump.target).setPredecessor(jump.source);
+    }
+
+    int size = instructions.size();
+    int[] lines = new int[size];
+    int[] predecessors = new int[size];
+    int[] branches = new int[size];
+
+    for (Insn insn : instructions) {
+      lines[insn.index] = insn.line;
+      predecessors[insn.index] = insn.predecessor == null ? MethodStructure.NO_INSTRUCTION : insn.predecessor.index;
+      branches[insn.index] = insn.branches;
+    }
+
+    int[] probeIds = new int[probes.size()];
+    int[] probeInstructions = new int[probes.size()];
+
+    for (int i = 0; i < probeIds.length; i++) {
+      probeIds[i] = probes.get(i)[0];
+      probeInstructions[i] = probes.get(i)[1];
+    }
+
+    visitStructure(new MethodStructure(name, desc, signature, firstLine, lastLine, lines, predecessors, branches, probeIds, probeInstructions));
+  }
+
+}
@@ -0,0 +1,461 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * Finds the redundant tests of the suite and computes a reduced suite which covers the same probes as the whole suite.
+ *
+ * The coverage vector of a test consists of the executed probes of the classes under {@link #classesDirectory}, the test classes are left
+ * out. Tests with identical vectors are grouped by hashing the vectors, only the first test of a group is considered for the reduced suite.
+ * The reduced suite is computed by the greedy set cover heuristic: the test which covers the most uncovered probes is kept until every
+ * probe is covered. The vectors are stored as their non-zero 64 bit words, so the gain of a test is counted word by word, and the gains of
+ * the candidates are computed by a pool of {@link #threads} workers in every round.
+ *
+ * The outputs are written to the output directory:
+ * <ul>
+ * <li>keep.tests: the tests of the reduced suite in the order they were chosen, i.e. by decreasing additional coverage,</li>
+ * <li>drop.tests: the other tests,</li>
+ * <li>redundant.groups: the groups of tests with identical coverage, one group per line separated by {@link Constants#GROUPS_FILE_SEPARATOR}.</li>
+ * </ul>
+ */
+@Mojo(name = "minimize")
+public class MinimizationMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/coverage/raw")
+  private File inputDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/minimization")
+  private File outputDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/classes")
+  private File classesDirectory;
+
+  /**
+   * The revision identifier of the actual program under test.
+   */
+  @Parameter(property = "soda.revision", defaultValue = "0")
+  private String revision;
+
+  /**
+   * The number of worker threads. Non-positive values mean the number of available processors.
+   */
+  @Parameter(property = "soda.threads", defaultValue = "0")
+  private int threads;
+
+  /**
+   * The index of the first probe of every class in the coverage vectors, keyed by the JaCoCo class ids.
+   */
+  private final Map<Long, Integer> probeOffsets = new HashMap<Long, Integer>();
+
+  /**
+   * The number of probes per class, keyed by the JaCoCo class ids.
+   */
+  private final Map<Long, Integer> probeCounts = new HashMap<Long, Integer>();
+
+  private int universeSize;
+
+  private ExecutorService executor;
+
+  private int numOfThreads;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    numOfThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    executor = Executors.newFixedThreadPool(numOfThreads);
+
+    try (CoverageInput coverageInput = CoverageInput.open(inputDirectory)) {
+      Map<String, String> hashToTestMap = ResultFiles.readHashToTestMap(baseDirectory, revision);
+
+      createProbeOffsets(StructureCache.analyze(classesDirectory, new File(baseDirectory, Constants.STRUCTURE_CACHE_FILE)));
+
+      int numOfTests = coverageInput.size();
+
+      String[] testNames = new String[numOfTests];
+      int unknownTests = 0;
+
+      for (int i = 0; i < numOfTests; i++) {
+        testNames[i] = hashToTestMap.get(coverageInput.getHash(i));
+
+        if (testNames[i] == null) {
+          unknownTests++;
+        }
+      }
+
+      // The listener maps every test whose coverage it records, so the coverage data has been collected at another revision.
+      if (unknownTests > 0) {
+        throw new MojoFailureException(String.format("%d of the %d tests of the coverage data '%s' are not known at revision %s.", unknownTests,
+            numOfTests, inputDirectory, revision));
+      }
+
+      CoverageVector[] vectors = loadVectors(coverageInput);
+
+      // Grouping the tests with identical coverage, the groups are ordered by their first tests.
+      Map<CoverageVector, List<Integer>> groups = new LinkedHashMap<CoverageVector, List<Integer>>();
+
+      for (int i = 0; i < numOfTests; i++) {
+        if (!groups.containsKey(vectors[i])) {
+          groups.put(vectors[i], new ArrayList<Integer>());
+        }
+
+        groups.get(vectors[i]).add(i);
+      }
+
+      int redundantGroups = 0;
+
+      List<Integer> candidates = new ArrayList<Integer>();
+
+      for (Map.Entry<CoverageVector, List<Integer>> group : groups.entrySet()) {
+        if (group.getValue().size() > 1) {
+          redundantGroups++;
+        }
+
+        if (group.getKey().words.length > 0) {
+          candidates.add(group.getValue().get(0));
+        }
+      }
+
+      getLog().info(String.format("%d tests have %d distinct coverage vectors, %d groups of tests have identical coverage.", numOfTests, groups.size(),
+          redundantGroups));
+
+      List<Integer> kept = cover(vectors, candidates);
+
+      writeOutputs(testNames, groups, kept);
+
+      getLog().info(String.format("Kept %d of %d tests.", kept.size(), numOfTests));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot minimize the test suite.", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Assigns a range of the coverage vectors to the probes of every class.
+   */
+  private void createProbeOffsets(StructureCache structureCache) {
+    List<Long> classIds = new ArrayList<Long>();
+
+    for (ClassStructure structure : structureCache.getClasses()) {
+      classIds.add(structure.getId());
+    }
+
+    Collections.sort(classIds);
+
+    int offset = 0;
+
+    for (long classId : classIds) {
+      int probeCount = structureCache.getClass(classId).getProbeCount();
+
+      probeOffsets.put(classId, offset);
+      probeCounts.put(classId, probeCount);
+
+      offset += probeCount;
+    }
+
+    universeSize = offset;
+
+    getLog().debug("probes = " + universeSize);
+  }
+
+  /**
+   * Loads the coverage vectors of the tests.
+   *
+   * @throws IOException
+   */
+  private CoverageVector[] loadVectors(final CoverageInput coverageInput) throws IOException {
+    final int numOfTests = coverageInput.size();
+    final CoverageVector[] vectors = new CoverageVector[numOfTests];
+    final int rangeSize = Math.max(1, (numOfTests + numOfThreads - 1) / numOfThreads);
+
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+    for (int start = 0; start < numOfTests; start += rangeSize) {
+      final int first = start;
+      final int last = Math.min(numOfTests, start + rangeSize);
+
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int test = first; test < last; test++) {
+            vectors[test] = createVector(coverageInput.load(test).getExecutionDataStore());
+          }
+
+          return null;
+        }
+      }));
+    }
+
+    for (Future<Void> future : futures) {
+      IOUtils.waitFor(future, "Minimization");
+    }
+
+    return vectors;
+  }
+
+  private CoverageVector createVector(ExecutionDataStore executionData) {
+    long[] words = new long[(universeSize + 63) >>> 6];
+
+    for (ExecutionData data : executionData.getContents()) {
+      Integer offset = probeOffsets.get(data.getId());
+
+      if (offset == null || probeCounts.get(data.getId()) != data.getProbes().length) {
+        continue;
+      }
+
+      boolean[] probes = data.getProbes();
+
+      for (int i = 0; i < probes.length; i++) {
+        if (probes[i]) {
+          int probe = offset + i;
+
+          words[probe >>> 6] |= 1L << probe;
+        }
+      }
+    }
+
+    return new CoverageVector(words);
+  }
+
+  /**
+   * Chooses the tests of the reduced suite by the greedy set cover heuristic.
+   *
+   * @param vectors
+   *          The coverage vectors of the tests.
+   * @param candidates
+   *          The tests which can be chosen.
+   *
+   * @return The chosen tests in the order they were chosen.
+   *
+   * @throws IOException
+   */
+  private List<Integer> cover(final CoverageVector[] vectors, List<Integer> candidates) throws IOException {
+    final long[] uncovered = new long[(universeSize + 63) >>> 6];
+
+    for (int test : candidates) {
+      vectors[test].addTo(uncovered);
+    }
+
+    List<Integer> kept = new ArrayList<Integer>();
+
+    final int[] tests = new int[candidates.size()];
+    final int[] gains = new int[candidates.size()];
+
+    for (int i = 0; i < tests.length; i++) {
+      tests[i] = candidates.get(i);
+    }
+
+    int size = tests.length;
+
+    while (size > 0) {
+      final int rangeSize = Math.max(1, (size + numOfThreads - 1) / numOfThreads);
+
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+      for (int start = 0; start < size; start += rangeSize) {
+        final int first = start;
+        final int last = Math.min(size, start + rangeSize);
+
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = first; i < last; i++) {
+              gains[i] = vectors[tests[i]].countIntersection(uncovered);
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        IOUtils.waitFor(future, "Minimization");
+      }
+
+      // The gains can only decrease, so the tests without gain are removed for good. Ties are broken by the order of the tests.
+      int best = -1;
+      int remaining = 0;
+
+      for (int i = 0; i < size; i++) {
+        if (gains[i] > 0) {
+          if (best < 0 || gains[i] > gains[best]) {
+            best = remaining;
+          }
+
+          gains[remaining] = gains[i];
+          tests[remaining] = tests[i];
+
+          remaining++;
+        }
+      }
+
+      if (best < 0) {
+        break;
+      }
+
+      kept.add(tests[best]);
+
+      vectors[tests[best]].removeFrom(uncovered);
+
+      size = remaining;
+    }
+
+    return kept;
+  }
+
+  /**
+   * Writes the keep and drop lists and the groups of redundant tests.
+   *
+   * @throws IOException
+   */
+  private void writeOutputs(String[] testNames, Map<CoverageVector, List<Integer>> groups, List<Integer> kept) throws IOException {
+    outputDirectory.mkdirs();
+
+    boolean[] isKept = new boolean[testNames.length];
+
+    for (int test : kept) {
+      isKept[test] = true;
+    }
+
+    try (BufferedWriter output = new BufferedWriter(new FileWriter(new File(outputDirectory, "keep.tests")))) {
+      for (int test : kept) {
+        output.write(testNames[test] + '\n');
+      }
+    }
+
+    List<String> dropped = new ArrayList<String>();
+
+    for (int test = 0; test < testNames.length; test++) {
+      if (!isKept[test]) {
+        dropped.add(testNames[test]);
+      }
+    }
+
+    Collections.sort(dropped);
+
+    try (BufferedWriter output = new BufferedWriter(new FileWriter(new File(outputDirectory, "drop.tests")))) {
+      for (String testName : dropped) {
+        output.write(testName + '\n');
+      }
+    }
+
+    try (BufferedWriter output = new BufferedWriter(new FileWriter(new File(outputDirectory, "redundant.groups")))) {
+      for (List<Integer> group : groups.values()) {
+        if (group.size() > 1) {
+          String separator = "";
+
+          for (int test : group) {
+            output.write(separator + testNames[test]);
+
+            separator = Constants.GROUPS_FILE_SEPARATOR;
+          }
+
+          output.write('\n');
+        }
+      }
+    }
+  }
+
+  /**
+   * The executed probes of a test, stored as the indexes and the values of the non-zero words of the bitset.
+   */
+  private static class CoverageVector {
+
+    private final int[] indexes;
+
+    private final long[] words;
+
+    private final int hash;
+
+    CoverageVector(long[] bitset) {
+      int count = 0;
+
+      for (long word : bitset) {
+        if (word != 0) {
+          count++;
+        }
+      }
+
+      indexes = new int[count];
+      words = new long[count];
+
+      for (int i = 0, j = 0; i < bitset.length; i++) {
+        if (bitset[i] != 0) {
+          indexes[j] = i;
+          words[j] = bitset[i];
+
+          j++;
+        }
+      }
+
+      hash = 31 * Arrays.hashCode(indexes) + Arrays.hashCode(words);
+    }
+
+    /**
+     * @return The number of probes of the vector which are set in the given bitset.
+     */
+    int countIntersection(long[] bitset) {
+      int count = 0;
+
+      for (int i = 0; i < indexes.length; i++) {
+        count += Long.bitCount(words[i] & bitset[indexes[i]]);
+      }
+
+      return count;
+    }
+
+    void addTo(long[] bitset) {
+      for (int i = 0; i < indexes.length; i++) {
+        bitset[indexes[i]] |= words[i];
+      }
+    }
+
+    void removeFrom(long[] bitset) {
+      for (int i = 0; i < indexes.length; i++) {
+        bitset[indexes[i]] &= ~words[i];
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CoverageVector)) {
+        return false;
+      }
+
+      CoverageVector other = (CoverageVector) obj;
+
+      return hash == other.hash && Arrays.equals(indexes, other.indexes) && Arrays.equals(words, other.words);
+    }
+
+  }
+
+}
@@ -0,0 +1,158 @@
+package hu.sed.soda.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the mutant by test coverage matrix written by the {@link MutationMatrixWriter}. The tables are loaded when the matrix is opened,
+ * the rows are decoded on demand from the memory-mapped file.
+ *
+ * If the tests have been forked, every fork has written its own shard (TestCoverage.matrix.f&lt;fork&gt;) holding only the tests run by the
+ * fork. The shards are not merged, a reader has to open each of them and combine the results, e.g. by taking the union of the covering
+ * tests of a mutant over the shards.
+ *
+ * The reader is immutable after it has been opened, so it can be shared between threads.
+ */
+public class MutationMatrixReader implements Closeable {
+
+  /**
+   * The memory-mapped content of the file.
+   */
+  private final ByteBuffer buffer;
+
+  private final String[] testNames;
+
+  /**
+   * The tests which executed the instrumented code without a mutation identifier, as a bitset.
+   */
+  private final long[] coveringTests;
+
+  private final String[] mutantIds;
+
+  private final int[] rowOffsets;
+
+  private final Map<String, Integer> mutantIndexes;
+
+  /**
+   * The offset of the first row.
+   */
+  private final int rowsStart;
+
+  /**
+   * Opens a matrix.
+   *
+   * @param file
+   *          The matrix file.
+   *
+   * @throws IOException
+   */
+  public MutationMatrixReader(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(String.format("Mutation matrix '%s' is larger than 2GB.", file.getPath()));
+      }
+
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+    }
+
+    if (buffer.limit() < 6 || buffer.getInt() != MutationMatrixWriter.MAGIC) {
+      throw new IOException(String.format("File '%s' is not a mutation matrix.", file.getPath()));
+    }
+
+    short version = buffer.getShort();
+
+    if (version != MutationMatrixWriter.VERSION) {
+      throw new IOException(String.format("Unsupported mutation matrix version %d in '%s'.", version, file.getPath()));
+    }
+
+    testNames = new String[buffer.getInt()];
+
+    for (int i = 0; i < testNames.length; i++) {
+      testNames[i] = IOUtils.readString(buffer);
+    }
+
+    coveringTests = CompressedBitmap.decodeWords(buffer, (testNames.length + 63) >>> 6);
+
+    int mutantCount = buffer.getInt();
+
+    mutantIds = new String[mutantCount];
+    rowOffsets = new int[mutantCount];
+    mutantIndexes = new HashMap<String, Integer>(2 * mutantCount);
+
+    for (int i = 0; i < mutantCount; i++) {
+      mutantIds[i] = IOUtils.readString(buffer);
+      rowOffsets[i] = buffer.getInt();
+
+      mutantIndexes.put(mutantIds[i], i);
+    }
+
+    rowsStart = buffer.position();
+  }
+
+  /**
+   * @return The number of tests.
+   */
+  public int getTestCount() {
+    return testNames.length;
+  }
+
+  public String getTestName(int testIndex) {
+    return testNames[testIndex];
+  }
+
+  /**
+   * @return True if the test executed the instrumented code without a mutation identifier.
+   */
+  public boolean isCovering(int testIndex) {
+    return (coveringTests[testIndex >>> 6] & (1L << testIndex)) != 0;
+  }
+
+  /**
+   * @return The number of mutants.
+   */
+  public int getMutantCount() {
+    return mutantIds.length;
+  }
+
+  public String getMutantId(int mutantIndex) {
+    return mutantIds[mutantIndex];
+  }
+
+  /**
+   * @param mutantId
+   *          The identifier of a mutant.
+   *
+   * @return The index of the mutant, or -1 if no test executed it.
+   */
+  public int getMutantIndex(String mutantId) {
+    Integer index = mutantIndexes.get(mutantId);
+
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param mutantIndex
+   *          The index of a mutant.
+   *
+   * @return The indexes of the tests which executed the mutant in ascending order.
+   */
+  public int[] getCoveringTests(int mutantIndex) {
+    ByteBuffer input = buffer.duplicate();
+
+    IOUtils.seek(input, rowsStart + rowOffsets[mutantIndex]);
+
+    return CompressedBitmap.decodeValues(input);
+  }
+
+  @Override
+  public void close() {
+    // The mapping is released by the garbage collector.
+  }
+
+}
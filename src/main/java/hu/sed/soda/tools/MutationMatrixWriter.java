@@ -0,0 +1,183 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Writes the mutant by test coverage matrix recorded by the {@link SimpleInstrumentationListener}.
+ *
+ * The matrix is stored row by row, every row holds the tests which executed a mutant, encoded by {@link CompressedBitmap}. The file starts
+ * with a header, which is followed by
+ * <ul>
+ * <li>the test table: the names of the tests, the position of a test in the table is its index,</li>
+ * <li>the set of the tests which executed the instrumented code without a mutation identifier,</li>
+ * <li>the mutant table: the identifiers of the mutants and the offsets of their rows relative to the start of the rows,</li>
+ * <li>the rows.</li>
+ * </ul>
+ * The tests and the mutants are sorted by their names, so the file does not depend on the order in which they were executed.
+ */
+public final class MutationMatrixWriter {
+
+  static final int MAGIC = 0x534f444d;
+
+  static final short VERSION = 1;
+
+  private MutationMatrixWriter() {
+  }
+
+  /**
+   * Writes a matrix file.
+   *
+   * @param file
+   *          The matrix file.
+   * @param testNames
+   *          The names of the tests keyed by their ids.
+   * @param coveringTests
+   *          The ids of the tests which executed the instrumented code.
+   * @param mutationNames
+   *          The identifiers of the mutants keyed by their ids, unused ids are null.
+   * @param testMutations
+   *          The sorted ids of the mutants executed by the tests keyed by the test ids.
+   *
+   * @throws IOException
+   */
+  public static void write(File file, String[] testNames, BitSet coveringTests, String[] mutationNames, Map<Integer, int[]> testMutations) throws IOException {
+    int[] testOrder = getOrder(testNames);
+    int[] mutantOrder = getOrder(mutationNames);
+
+    // The new index of every test and mutant id, -1 for the unused mutant ids.
+    int[] testIndexes = new int[testNames.length];
+    int[] mutantIndexes = new int[mutationNames.length];
+
+    Arrays.fill(mutantIndexes, -1);
+
+    for (int i = 0; i < testOrder.length; i++) {
+      testIndexes[testOrder[i]] = i;
+    }
+
+    for (int i = 0; i < mutantOrder.length; i++) {
+      mutantIndexes[mutantOrder[i]] = i;
+    }
+
+    // Transposing the test-major lists into rows, the tests are visited in the new order, so every row is sorted.
+    int[] rowStarts = new int[mutantOrder.length + 1];
+
+    for (int[] mutations : testMutations.values()) {
+      for (int mutation : mutations) {
+        if (mutantIndexes[mutation] >= 0) {
+          rowStarts[mutantIndexes[mutation] + 1]++;
+        }
+      }
+    }
+
+    for (int i = 0; i < mutantOrder.length; i++) {
+      rowStarts[i + 1] += rowStarts[i];
+    }
+
+    int[] cells = new int[rowStarts[mutantOrder.length]];
+    int[] rowEnds = Arrays.copyOf(rowStarts, mutantOrder.length);
+
+    for (int i = 0; i < testOrder.length; i++) {
+      int[] mutations = testMutations.get(testOrder[i]);
+
+      if (mutations != null) {
+        for (int mutation : mutations) {
+          if (mutantIndexes[mutation] >= 0) {
+            cells[rowEnds[mutantIndexes[mutation]]++] = i;
+          }
+        }
+      }
+    }
+
+    int[] covering = new int[coveringTests.cardinality()];
+    int count = 0;
+
+    for (int test = coveringTests.nextSetBit(0); test >= 0; test = coveringTests.nextSetBit(test + 1)) {
+      covering[count++] = testIndexes[test];
+    }
+
+    Arrays.sort(covering);
+
+    // The file is replaced only when it has been written completely, so a failure never leaves a truncated file behind.
+    File tempFile = IOUtils.createTempFile(file);
+
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+
+        output.writeInt(testOrder.length);
+
+        for (int test : testOrder) {
+          IOUtils.writeString(output, testNames[test]);
+        }
+
+        output.write(CompressedBitmap.encode(covering, covering.length));
+
+        byte[][] rows = new byte[mutantOrder.length][];
+
+        output.writeInt(mutantOrder.length);
+
+        long offset = 0;
+
+        for (int i = 0; i < mutantOrder.length; i++) {
+          rows[i] = CompressedBitmap.encode(Arrays.copyOfRange(cells, rowStarts[i], rowStarts[i + 1]), rowStarts[i + 1] - rowStarts[i]);
+
+          if (offset > Integer.MAX_VALUE) {
+            throw new IOException("The mutation matrix cannot be larger than 2GB.");
+          }
+
+          IOUtils.writeString(output, mutationNames[mutantOrder[i]]);
+          output.writeInt((int) offset);
+
+          offset += rows[i].length;
+        }
+
+        for (byte[] row : rows) {
+          output.write(row);
+        }
+      }
+
+      IOUtils.replace(tempFile, file);
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * @return The ids of the non-null names ordered by the names.
+   */
+  private static int[] getOrder(final String[] names) {
+    Integer[] ids = new Integer[names.length];
+    int count = 0;
+
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] != null) {
+        ids[count++] = i;
+      }
+    }
+
+    Arrays.sort(ids, 0, count, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return names[a].compareTo(names[b]);
+      }
+    });
+
+    int[] order = new int[count];
+
+    for (int i = 0; i < count; i++) {
+      order[i] = ids[i];
+    }
+
+    return order;
+  }
+
+}
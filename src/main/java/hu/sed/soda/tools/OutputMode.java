@@ -0,0 +1,43 @@
+package hu.sed.soda.tools;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * An enumeration for storing the ways the coverage data of the tests can be stored.
+ */
+public enum OutputMode {
+
+  /**
+   * Every test has its own exec file, see {@link ExecFileSink}.
+   */
+  EXEC,
+  /**
+   * All tests are stored in a single container file, see {@link CoverageMatrixWriter}.
+   */
+  MATRIX;
+
+  private static final Logger LOGGER = Logger.getLogger(OutputMode.class.getName());
+
+  /**
+   * Reads the mode from the {@link Constants#OUTPUT_MODE_PROPERTY} system property.
+   * 
+   * @return The configured mode, {@link #EXEC} by default or if the configured mode is unknown.
+   */
+  public static OutputMode fromSystemProperties() {
+    String value = System.getProperty(Constants.OUTPUT_MODE_PROPERTY);
+
+    if (value == null) {
+      return EXEC;
+    }
+
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      LOGGER.severe(String.format("Unknown output mode '%s', using %s instead.", value, EXEC));
+
+      return EXEC;
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Collects execution data from the TCP server of a JaCoCo agent, which may run in a remote JVM.
+ *
+ * A single connection is kept open for the whole test run, so every request costs one round-trip instead of a new connection. The
+ * connection is reopened on the next request if it fails or times out.
+ */
+public class RemoteCoverageDumper implements CoverageDumper {
+
+  /**
+   * The address of the agent.
+   */
+  private final String address;
+
+  /**
+   * The port on which the agent listens.
+   */
+  private final int port;
+
+  /**
+   * The timeout of connecting to the agent in milliseconds.
+   */
+  private final int connectTimeout;
+
+  /**
+   * The timeout of waiting for the response of the agent in milliseconds.
+   */
+  private final int readTimeout;
+
+  private Socket socket;
+
+  private OutputStream output;
+
+  private RemoteControlWriter writer;
+
+  private RemoteControlReader reader;
+
+  /**
+   * Creates a dumper for an agent.
+   *
+   * @param address
+   *          The address of the agent.
+   * @param port
+   *          The port on which the agent listens.
+   * @param connectTimeout
+   *          The timeout of connecting to the agent in milliseconds.
+   * @param readTimeout
+   *          The timeout of waiting for the response of the agent in milliseconds.
+   */
+  public RemoteCoverageDumper(String address, int port, int connectTimeout, int readTimeout) {
+    this.address = address;
+    this.port = port;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    request(false);
+  }
+
+  @Override
+  public synchronized ExecFileLoader dumpAndReset() throws IOException {
+    return request(true);
+  }
+
+  /**
+   * Sends a reset request, optionally combined with a dump, to the agent over the open connection and waits for its response.
+   *
+   * @param dump
+   *          Whether the execution data should be dumped.
+   *
+   * @return An {@link ExecFileLoader} that holds the received data.
+   *
+   * @throws IOException
+   */
+  private ExecFileLoader request(boolean dump) throws IOException {
+    ExecFileLoader loader = new ExecFileLoader();
+
+    try {
+      connect();
+
+      reader.setSessionInfoVisitor(loader.getSessionInfoStore());
+      reader.setExecutionDataVisitor(loader.getExecutionDataStore());
+
+      writer.visitDumpCommand(dump, true);
+      output.flush();
+
+      if (!reader.read()) {
+        throw new IOException("Socket closed unexpectedly.");
+      }
+    } catch (IOException e) {
+      close();
+
+      throw e;
+    }
+
+    return loader;
+  }
+
+  /**
+   * Opens the connection to the agent unless it is already open.
+   *
+   * @throws IOException
+   */
+  private void connect() throws IOException {
+    if (socket == null) {
+      Socket newSocket = new Socket();
+
+      try {
+        newSocket.connect(new InetSocketAddress(address, port), connectTimeout);
+        newSocket.setSoTimeout(readTimeout);
+        newSocket.setTcpNoDelay(true);
+
+        output = new BufferedOutputStream(newSocket.getOutputStream());
+        writer = new RemoteControlWriter(output);
+        reader = new RemoteControlReader(new BufferedInputStream(newSocket.getInputStream()));
+      } catch (IOException e) {
+        newSocket.close();
+
+        throw e;
+      }
+
+      socket = newSocket;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    Socket oldSocket = socket;
+
+    socket = null;
+    output = null;
+    writer = null;
+    reader = null;
+
+    if (oldSocket != null) {
+      oldSocket.close();
+    }
+  }
+
+}
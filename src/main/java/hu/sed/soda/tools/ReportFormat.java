@@ -0,0 +1,53 @@
+package hu.sed.soda.tools;
+
+/**
+ * An enumeration for storing the formats of the per-test reports generated by the {@link ReportGeneratorMojo}.
+ */
+public enum ReportFormat {
+
+  /**
+   * The full report of JaCoCo's XMLFormatter, followed by a comment with the name of the test.
+   */
+  XML("xml"),
+  /**
+   * The covered methods and lines only, see {@link TextReportWriter}.
+   */
+  TEXT("txt");
+
+  /**
+   * The extension of the report files.
+   */
+  private final String extension;
+
+  private ReportFormat(String extension) {
+    this.extension = extension;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * @param name
+   *          The case insensitive name or extension of a format, null means {@link #XML}.
+   *
+   * @return The format with the given name.
+   *
+   * @throws IllegalArgumentException
+   *           If there is no such format.
+   */
+  public static ReportFormat fromName(String name) {
+    if (name == null) {
+      return XML;
+    }
+
+    for (ReportFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name.trim()) || format.extension.equalsIgnoreCase(name.trim())) {
+        return format;
+      }
+    }
+
+    throw new IllegalArgumentException(String.format("Unknown report format '%s', it must be xml, text or txt.", name));
+  }
+
+}
@@ -1,16 +1,30 @@
 package hu.sed.soda.tools;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -18,7 +32,6 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.DirectoryScanner;
-import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.tools.ExecFileLoader;
@@ -27,7 +40,8 @@ import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.xml.XMLFormatter;
 
 /**
- * Handles the coverage report generation process which produces the separate XML coverage files for the different tests.
+ * Handles the coverage report generation process which produces the separate XML coverage files for the different tests. With the text
+ * {@link #format} a lightweight report is written instead, which lists only the covered methods and lines, see {@link TextReportWriter}.
  */
 @Mojo(name = "report")
 public class ReportGeneratorMojo extends AbstractMojo {
@@ -50,14 +64,55 @@ public class ReportGeneratorMojo extends AbstractMojo {
   /**
    * The revision identifier of the actual program under test.
    */
-  @Parameter(defaultValue = "0")
+  @Parameter(property = "soda.revision", defaultValue = "0")
   private String revision;
 
+  /**
+   * The number of worker threads which generate the reports. Non-positive values mean the number of available processors.
+   */
+  @Parameter(property = "soda.threads", defaultValue = "0")
+  private int threads;
+
+  /**
+   * If true only the classes which were executed by a test are analyzed and included in its report.
+   */
+  @Parameter(property = "soda.sparse", defaultValue = "false")
+  private boolean sparse;
+
+  /**
+   * If true the reports which are still up to date according to the {@link #manifest} are not generated again.
+   */
+  @Parameter(property = "soda.incremental", defaultValue = "true")
+  private boolean incremental;
+
+  /**
+   * The format of the reports, xml or text (txt).
+   */
+  @Parameter(property = "soda.format", defaultValue = "xml")
+  private String format;
+
+  private ReportFormat reportFormat;
+
   /**
    * Associates the hash of the name and the full name of a test together.
    */
   private Map<String, String> hashToTestMap = new HashMap<String, String>();
 
+  /**
+   * The structures of the classes under {@link #classesDirectory}, which are shared by all tests.
+   */
+  private StructureCache structureCache;
+
+  /**
+   * The digest of all classes, which the reports depend on unless they are {@link #sparse}.
+   */
+  private String classesDigest;
+
+  /**
+   * Records the inputs of the generated reports.
+   */
+  private ReportManifest manifest;
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
     getLog().info("Executing SoDA Maven Plugin ...");
@@ -69,13 +124,19 @@ public class ReportGeneratorMojo extends AbstractMojo {
     getLog().debug("source = " + sourceDirectory.getAbsolutePath());
 
     try {
-      outputDirectory.mkdirs();
+      reportFormat = ReportFormat.fromName(format);
+    } catch (IllegalArgumentException e) {
+      throw new MojoFailureException(e.getMessage());
+    }
 
-      String[] coverageFilePaths = getCoverageFilePaths(inputDirectory);
+    try {
+      outputDirectory.mkdirs();
 
-      getLog().debug("files = " + coverageFilePaths.length);
+      try (CoverageInput coverageInput = CoverageInput.open(inputDirectory)) {
+        getLog().debug("tests = " + coverageInput.size());
 
-      generateReports(coverageFilePaths);
+        generateReports(coverageInput);
+      }
 
       getLog().info("Reports were generated successfully.");
     } catch (IllegalStateException | IOException e) {
@@ -88,79 +149,148 @@ public class ReportGeneratorMojo extends AbstractMojo {
   }
 
   /**
-   * Collects the coverage files which were produced by EMMA.
+   * Generates the XML report files based on the coverage data of the tests. The tests are processed concurrently by a pool of
+   * {@link #threads} workers. Since every test has its own output file the result does not depend on the scheduling of the workers.
    * 
-   * @param baseDir
-   *          The root directory of the search.
+   * @param coverageInput
+   *          The coverage data of the tests.
    * 
-   * @return The list of coverage file paths relative to baseDir.
+   * @throws IOException
+   * @throws FileNotFoundException
    */
-  private String[] getCoverageFilePaths(File baseDir) {
-    DirectoryScanner scanner = new DirectoryScanner();
+  private void generateReports(final CoverageInput coverageInput) throws FileNotFoundException, IOException {
+    getLog().info("Generating reports...");
+
+    mergeShards();
+    createHashToTestMapping();
+
+    structureCache = StructureCache.analyze(classesDirectory, new File(baseDirectory, Constants.STRUCTURE_CACHE_FILE));
+
+    getLog().debug("classes = " + structureCache.getClasses().size() + " (cached = " + structureCache.getCachedCount() + ")");
+
+    List<Long> classIds = new ArrayList<Long>();
+
+    for (ClassStructure structure : structureCache.getClasses()) {
+      classIds.add(structure.getId());
+    }
 
-    scanner.setBasedir(baseDir.getAbsoluteFile());
-    scanner.setIncludes(new String[] { String.format("*.%s", Constants.COVERAGE_FILE_EXT) });
-    scanner.scan();
+    classesDigest = ReportManifest.digestClasses(classIds, false);
 
-    return scanner.getIncludedFiles();
+    final int numOfTests = coverageInput.size();
+    final int stepSize = Math.max(1, numOfTests / 10);
+    final AtomicInteger index = new AtomicInteger();
+    final AtomicInteger upToDate = new AtomicInteger();
+
+    final int numOfThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+    getLog().debug("threads = " + numOfThreads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+
+    manifest = new ReportManifest(new File(baseDirectory, Constants.MANIFEST_FILE));
+
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(numOfTests);
+
+      for (int i = 0; i < numOfTests; i++) {
+        final int test = i;
+
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            if (!generateReport(coverageInput, test)) {
+              upToDate.incrementAndGet();
+            }
+
+            int done = index.incrementAndGet();
+
+            if (done % stepSize == 0) {
+              getLog().info(String.format("%d%% done.", 100 * done / numOfTests));
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        IOUtils.waitFor(future, "Report generation");
+      }
+    } finally {
+      executor.shutdownNow();
+
+      manifest.close();
+    }
+
+    getLog().info(String.format("%d of %d reports were up to date.", upToDate.get(), numOfTests));
   }
 
   /**
-   * Generates the XML report files based on the separate coverage files. EMMA's {@link ReportProcessor} is used to generate the output.
+   * Generates the report file of a single test unless it is up to date.
+   * 
+   * @param coverageInput
+   *          The coverage data of the tests.
+   * @param test
+   *          The index of the test.
    * 
-   * @param coverageFilePaths
-   *          The coverage data files.
+   * @return False if the report was up to date.
    * 
    * @throws IOException
-   * @throws FileNotFoundException
    */
-  private void generateReports(String[] coverageFilePaths) throws FileNotFoundException, IOException {    
-    getLog().info("Generating reports...");
+  private boolean generateReport(CoverageInput coverageInput, int test) throws IOException {
+    String nameHash = coverageInput.getHash(test);
 
-    createHashToTestMapping();
-    
-    int index = 0;
-    final int numOfPaths = coverageFilePaths.length;
-    final int stepSize = Math.max(1, numOfPaths / 10);
+    ExecFileLoader loader = coverageInput.load(test);
 
-    for (String path : coverageFilePaths) {
-      String nameHash = path.replaceAll(String.format("\\.%s", Constants.COVERAGE_FILE_EXT), "");
+    String coverageDigest = ReportManifest.digestCoverage(loader);
+    String dependencyDigest = sparse ? ReportManifest.digestClasses(structureCache.getCoveredClassIds(loader.getExecutionDataStore()), true) : classesDigest;
 
-      ExecFileLoader loader = loadExecutionData(new File(inputDirectory, path));
+    File reportFile = getReportFile(nameHash);
 
-      // Run the structure analyzer on a single class folder to build up the coverage model.
-      // The process would be similar if your classes were in a jar file.
-      // Typically you would create a bundle for each class folder and each jar you want in your report.
+    if (incremental && reportFile.exists() && manifest.isUpToDate(reportFile.getName(), coverageDigest, dependencyDigest)) {
+      return false;
+    }
+
+    if (reportFormat == ReportFormat.TEXT) {
+      TextReportWriter.write(reportFile, getTestName(nameHash), loader.getExecutionDataStore(), structureCache);
+    } else {
+      // Project the execution data onto the structure of the class folder to build up the coverage model.
       // If you have more than one bundle you will need to add a grouping node to your report.
       final IBundleCoverage bundleCoverage = analyzeStructure(loader, nameHash);
 
       createReport(loader, bundleCoverage, nameHash);
-      
-      if (++index % stepSize == 0) {
-        getLog().info(String.format("%d%% done.", 100 * index / numOfPaths));
-      }
     }
+
+    manifest.update(reportFile.getName(), coverageDigest, dependencyDigest);
+
+    return true;
   }
 
   /**
-   * Loads coverage data from a given file.
-   * 
-   * @param executionDataFile
-   *          An arbitrary .exec file.
-   * 
-   * @return An {@link ExecFileLoader} that holds the coverage data.
+   * @param testNameHash
+   *          The hash of the name of a test.
    * 
-   * @throws IOException
+   * @return The full name of the test, or its hash if the name is unknown.
    */
-  private ExecFileLoader loadExecutionData(File executionDataFile) throws IOException {
-    ExecFileLoader execFileLoader = new ExecFileLoader();
-    execFileLoader.load(executionDataFile);
+  private String getTestName(String testNameHash) {
+    String testName = hashToTestMap.get(testNameHash);
+
+    return testName != null ? testName : testNameHash;
+  }
 
-    return execFileLoader;
+  /**
+   * @param testNameHash
+   *          The hash of the name of a test.
+   * 
+   * @return The report file of the test.
+   */
+  private File getReportFile(String testNameHash) {
+    return new File(outputDirectory, testNameHash + "." + reportFormat.getExtension());
   }
 
   /**
-   * Creates a coverage bundle by analyzing the given {@link ExecFileLoader}.
+   * Creates a coverage bundle by projecting the given {@link ExecFileLoader} onto the cached {@link #structureCache class structures}. In
+   * {@link #sparse} mode the classes without executed probes are left out of the bundle.
    * 
    * @param execFileLoader
    *          An arbitrary {@link ExecFileLoader} that holds the coverage data.
@@ -168,14 +298,15 @@ public class ReportGeneratorMojo extends AbstractMojo {
    *          The name of a test which will be used as the bundle name.
    * 
    * @return A coverage {@link IBundleCoverage bundle}.
-   * 
-   * @throws IOException
    */
-  private IBundleCoverage analyzeStructure(ExecFileLoader execFileLoader, String testName) throws IOException {
+  private IBundleCoverage analyzeStructure(ExecFileLoader execFileLoader, String testName) {
     final CoverageBuilder coverageBuilder = new CoverageBuilder();
-    final Analyzer analyzer = new Analyzer(execFileLoader.getExecutionDataStore(), coverageBuilder);
 
-    analyzer.analyzeAll(classesDirectory);
+    if (sparse) {
+      structureCache.analyzeCovered(execFileLoader.getExecutionDataStore(), coverageBuilder);
+    } else {
+      structureCache.analyze(execFileLoader.getExecutionDataStore(), coverageBuilder);
+    }
 
     return coverageBuilder.getBundle(testName);
   }
@@ -193,28 +324,95 @@ public class ReportGeneratorMojo extends AbstractMojo {
    * @throws IOException
    */
   private void createReport(ExecFileLoader execFileLoader, final IBundleCoverage bundleCoverage, String testNameHash) throws IOException {
-    final File outputFile = new File(outputDirectory, testNameHash + ".xml");
-    FileOutputStream out = new FileOutputStream(outputFile);
+    final File outputFile = getReportFile(testNameHash);
+
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+      // Create a concrete report visitor based on some supplied configuration. In this case we use the defaults
+      final XMLFormatter xmlFormatter = new XMLFormatter();
+      xmlFormatter.setOutputEncoding("UTF-8");
+
+      // The formatter closes its stream at the end, which must not close the file before the name of the test is appended.
+      final IReportVisitor visitor = xmlFormatter.createVisitor(new FilterOutputStream(out) {
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+          flush();
+        }
+      });
+      visitor.visitInfo(execFileLoader.getSessionInfoStore().getInfos(), execFileLoader.getExecutionDataStore().getContents());
+
+      // Populate the report structure with the bundle coverage information.
+      // Call visitGroup if you need groups in your report.
+      visitor.visitBundle(bundleCoverage, new DirectorySourceFileLocator(sourceDirectory, "UTF-8", 4));
+
+      // Signal end of structure information to allow report to write all information out
+      visitor.visitEnd();
+
+      // Appending the full name of the actual test to the end of the output file.
+      out.write(String.format("<!-- %s -->", getTestName(testNameHash)).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Appends the shards of the result, map and metrics files written by the forks of the test run to the shared files, then deletes the shards.
+   * The shared file and its shards are concatenated into a temporary file which replaces the shared file, and the shards are only deleted
+   * afterwards, so a failure cannot lose the records of a shard.
+   * 
+   * @throws IOException
+   */
+  private void mergeShards() throws IOException {
+    File revisionDirectory = new File(baseDirectory, revision);
 
-    // Create a concrete report visitor based on some supplied configuration. In this case we use the defaults
-    final XMLFormatter xmlFormatter = new XMLFormatter();
-    xmlFormatter.setOutputEncoding("UTF-8");
+    if (!revisionDirectory.isDirectory()) {
+      return;
+    }
+
+    for (String fileName : new String[] { Constants.RESULTS_FILE, Constants.MAP_FILE, Constants.METRICS_FILE }) {
+      String sharedFileName = String.format("%s.r%s", fileName, revision);
+
+      DirectoryScanner scanner = new DirectoryScanner();
+
+      scanner.setBasedir(revisionDirectory);
+      scanner.setIncludes(new String[] { sharedFileName + Constants.SHARD_SEPARATOR + "*" });
+      scanner.scan();
+
+      String[] shards = scanner.getIncludedFiles();
+
+      if (shards.length == 0) {
+        continue;
+      }
+
+      Arrays.sort(shards);
+
+      File sharedFile = new File(revisionDirectory, sharedFileName);
+      File tempFile = File.createTempFile(sharedFileName, ".tmp", revisionDirectory);
 
-    final IReportVisitor visitor = xmlFormatter.createVisitor(out);
-    visitor.visitInfo(execFileLoader.getSessionInfoStore().getInfos(), execFileLoader.getExecutionDataStore().getContents());
+      try {
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+          if (sharedFile.exists()) {
+            Files.copy(sharedFile.toPath(), output);
+          }
 
-    // Populate the report structure with the bundle coverage information.
-    // Call visitGroup if you need groups in your report.
-    visitor.visitBundle(bundleCoverage, new DirectorySourceFileLocator(sourceDirectory, "UTF-8", 4));
+          for (String shard : shards) {
+            Files.copy(new File(revisionDirectory, shard).toPath(), output);
+          }
+        }
 
-    // Signal end of structure information to allow report to write all information out
-    visitor.visitEnd();
+        Files.move(tempFile.toPath(), sharedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        tempFile.delete();
+      }
 
-    // Appending the full name of the actual test to the end of the output file.
-    out = new FileOutputStream(outputFile, true);
+      for (String shard : shards) {
+        Files.delete(new File(revisionDirectory, shard).toPath());
+      }
 
-    out.write(String.format("<!-- %s -->", hashToTestMap.get(testNameHash)).getBytes());
-    out.close();
+      getLog().info(String.format("Merged %d shards into %s.", shards.length, sharedFileName));
+    }
   }
 
   /**
@@ -0,0 +1,234 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Records for every generated report the digest of the coverage data and of the classes it was generated from. A report whose digests
+ * have not changed since it was generated is up to date and does not have to be generated again.
+ *
+ * Every entry is appended to the manifest file as soon as its report has been written, so an interrupted report generation can be resumed.
+ * The file is compacted when the manifest is closed.
+ */
+public class ReportManifest implements Closeable {
+
+  private final File file;
+
+  /**
+   * The digests of the coverage data and of the classes keyed by the names of the report files, so the reports of
+   * the different formats are tracked separately.
+   */
+  private final Map<String, String[]> entries = new LinkedHashMap<String, String[]>();
+
+  private final BufferedWriter output;
+
+  /**
+   * Opens a manifest, the entries of an existing manifest file are loaded.
+   * 
+   * @param file
+   *          The manifest file.
+   * 
+   * @throws IOException
+   */
+  public ReportManifest(File file) throws IOException {
+    this.file = file;
+
+    if (file.exists()) {
+      try (BufferedReader input = new BufferedReader(new FileReader(file))) {
+        String line = null;
+
+        while ((line = input.readLine()) != null) {
+          String[] tokens = line.split(Constants.MANIFEST_FILE_SEPARATOR);
+
+          // An incomplete line is left by an interrupted run, its report is generated again.
+          if (tokens.length != 3 || tokens[0].isEmpty() || tokens[1].isEmpty()) {
+            continue;
+          }
+
+          entries.put(tokens[0], new String[] { tokens[1], tokens[2] });
+        }
+      }
+    }
+
+    output = new BufferedWriter(new FileWriter(file, true));
+  }
+
+  /**
+   * @param reportName
+   *          The name of the report file of a test.
+   * @param coverageDigest
+   *          The actual digest of the coverage data of the test.
+   * @param classesDigest
+   *          The actual digest of the classes the report of the test depends on.
+   * 
+   * @return True if the report has been generated from the same coverage data and classes.
+   */
+  public synchronized boolean isUpToDate(String reportName, String coverageDigest, String classesDigest) {
+    String[] entry = entries.get(reportName);
+
+    return entry != null && entry[0].equals(coverageDigest) && entry[1].equals(classesDigest);
+  }
+
+  /**
+   * Records that the report of a test has been generated.
+   * 
+   * @param reportName
+   *          The name of the report file of the test.
+   * @param coverageDigest
+   *          The digest of the coverage data of the test.
+   * @param classesDigest
+   *          The digest of the classes the report depends on.
+   * 
+   * @throws IOException
+   */
+  public synchronized void update(String reportName, String coverageDigest, String classesDigest) throws IOException {
+    entries.put(reportName, new String[] { coverageDigest, classesDigest });
+
+    writeEntry(output, reportName, entries.get(reportName));
+    output.flush();
+  }
+
+  private static void writeEntry(BufferedWriter writer, String reportName, String[] entry) throws IOException {
+    writer.write(String.format("%s%s%s%s%s\n", reportName, Constants.MANIFEST_FILE_SEPARATOR, entry[0], Constants.MANIFEST_FILE_SEPARATOR, entry[1]));
+  }
+
+  /**
+   * Closes the manifest file and rewrites it with the last entry of every test.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    output.close();
+
+    File compactFile = new File(file.getPath() + ".tmp");
+
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(compactFile))) {
+      for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+        writeEntry(writer, entry.getKey(), entry.getValue());
+      }
+    }
+
+    Files.move(compactFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Calculates the digest of the coverage data of a test. The session information is included, so a re-run test is always reported again.
+   * 
+   * @param loader
+   *          An {@link ExecFileLoader} that holds the coverage data.
+   * 
+   * @return The digest as a hexadecimal string.
+   */
+  public static String digestCoverage(ExecFileLoader loader) {
+    List<ExecutionData> contents = new ArrayList<ExecutionData>(loader.getExecutionDataStore().getContents());
+
+    Collections.sort(contents, new Comparator<ExecutionData>() {
+      @Override
+      public int compare(ExecutionData o1, ExecutionData o2) {
+        return Long.compare(o1.getId(), o2.getId());
+      }
+    });
+
+    MessageDigest digest = createDigest();
+
+    try (DataOutputStream output = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+      for (SessionInfo info : loader.getSessionInfoStore().getInfos()) {
+        output.writeUTF(info.getId());
+        output.writeLong(info.getStartTimeStamp());
+        output.writeLong(info.getDumpTimeStamp());
+      }
+
+      for (ExecutionData data : contents) {
+        output.writeLong(data.getId());
+        output.writeUTF(data.getName());
+        output.writeInt(data.getProbes().length);
+
+        for (boolean probe : data.getProbes()) {
+          output.writeBoolean(probe);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return Hex.encodeHexString(digest.digest());
+  }
+
+  /**
+   * Calculates the digest of a set of classes. Since the JaCoCo class ids are calculated from the content of the class files, the digest
+   * changes whenever one of the classes changes.
+   * 
+   * @param classIds
+   *          The JaCoCo class ids.
+   * @param sparse
+   *          Whether the reports are generated in sparse mode.
+   * 
+   * @return The digest as a hexadecimal string.
+   */
+  public static String digestClasses(Collection<Long> classIds, boolean sparse) {
+    List<Long> sortedIds = new ArrayList<Long>(classIds);
+
+    Collections.sort(sortedIds);
+
+    MessageDigest digest = createDigest();
+
+    try (DataOutputStream output = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+      output.writeBoolean(sparse);
+
+      for (long classId : sortedIds) {
+        output.writeLong(classId);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return Hex.encodeHexString(digest.digest());
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Discards everything written into it.
+   */
+  private static class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+
+  }
+
+}
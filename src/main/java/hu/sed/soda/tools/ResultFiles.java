@@ -0,0 +1,93 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Locates and reads the files written by the listeners into the revision directory, i.e. the shared files and the shards written by forked
+ * test runs which have not been merged yet.
+ */
+public final class ResultFiles {
+
+  private ResultFiles() {
+  }
+
+  /**
+   * @param baseDirectory
+   *          The directory of the outputs.
+   * @param revision
+   *          The revision identifier of the program under test.
+   * @param fileName
+   *          The name of the file without the revision suffix, e.g. {@link Constants#MAP_FILE}.
+   * 
+   * @return The file of the revision with the given name and its shards, if they exist.
+   */
+  public static List<File> getFiles(File baseDirectory, String revision, String fileName) {
+    File revisionDirectory = new File(baseDirectory, revision);
+    String sharedFileName = String.format("%s.r%s", fileName, revision);
+
+    List<File> files = new ArrayList<File>();
+
+    if (!revisionDirectory.isDirectory()) {
+      return files;
+    }
+
+    DirectoryScanner scanner = new DirectoryScanner();
+
+    scanner.setBasedir(revisionDirectory);
+    scanner.setIncludes(new String[] { sharedFileName, sharedFileName + Constants.SHARD_SEPARATOR + "*" });
+    scanner.scan();
+
+    String[] names = scanner.getIncludedFiles();
+
+    Arrays.sort(names);
+
+    for (String name : names) {
+      files.add(new File(revisionDirectory, name));
+    }
+
+    return files;
+  }
+
+  /**
+   * Reads the mapping which associates the hashes of the tests with their full names.
+   * 
+   * @param baseDirectory
+   *          The directory of the outputs.
+   * @param revision
+   *          The revision identifier of the program under test.
+   * 
+   * @return The full names of the tests keyed by their hashes.
+   * 
+   * @throws IOException
+   */
+  public static Map<String, String> readHashToTestMap(File baseDirectory, String revision) throws IOException {
+    Map<String, String> hashToTestMap = new HashMap<String, String>();
+
+    for (File mapFile : getFiles(baseDirectory, revision, Constants.MAP_FILE)) {
+      try (BufferedReader input = new BufferedReader(new FileReader(mapFile))) {
+        String line = null;
+
+        while ((line = input.readLine()) != null) {
+          String[] tokens = line.split(Constants.MAP_FILE_SEPARATOR);
+
+          if (tokens.length > 1) {
+            hashToTestMap.put(tokens[0], tokens[1]);
+          }
+        }
+      }
+    }
+
+    return hashToTestMap;
+  }
+
+}
@@ -0,0 +1,312 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Splits the test classes into balanced shards based on the durations recorded by a previous test run.
+ *
+ * The durations of the test methods are read from the {@link Constants#METRICS_FILE metrics file} of the given revision and summed up per
+ * test class. Test classes without a recorded duration are assumed to take as long as the median class. The classes are assigned to the
+ * shards by the longest-processing-time-first rule: the longest class is always given to the least loaded shard.
+ *
+ * Every shard is written to a shard&lt;i&gt;.includes file, which can be passed to Surefire with the surefire.includesFile property (e.g. on
+ * separate CI nodes).
+ */
+@Mojo(name = "plan-shards")
+public class ShardPlannerMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/shards")
+  private File outputDirectory;
+
+  @Parameter(defaultValue = "${project.build.testOutputDirectory}")
+  private File testClassesDirectory;
+
+  /**
+   * The revision whose recorded durations are used.
+   */
+  @Parameter(property = "soda.revision", defaultValue = "0")
+  private String revision;
+
+  /**
+   * The number of shards.
+   */
+  @Parameter(property = "soda.shards", defaultValue = "2")
+  private int shards;
+
+  /**
+   * The patterns of the test classes under {@link #testClassesDirectory}, the defaults of Surefire.
+   */
+  @Parameter
+  private String[] includes = new String[] { "**/Test*.class", "**/*Test.class", "**/*Tests.class", "**/*TestCase.class" };
+
+  /**
+   * The patterns of the excluded classes under {@link #testClassesDirectory}, the defaults of Surefire.
+   */
+  @Parameter
+  private String[] excludes = new String[] { "**/*$*" };
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (shards < 1) {
+      throw new MojoFailureException("The number of shards must be positive.");
+    }
+
+    try {
+      Map<String, Long> durations = readClassDurations();
+
+      getLog().info(String.format("Recorded durations were found for %d test classes.", durations.size()));
+
+      addUnknownClasses(durations);
+
+      List<Shard> plan = plan(durations);
+
+      writeShards(plan);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot plan the shards.", e);
+    }
+  }
+
+  /**
+   * Reads the recorded durations of the test methods and sums them up per test class. If a test has been recorded several times its last
+   * duration is used.
+   *
+   * @return The durations of the test classes in microseconds.
+   *
+   * @throws IOException
+   */
+  private Map<String, Long> readClassDurations() throws IOException {
+    Map<String, String> hashToTestMap = ResultFiles.readHashToTestMap(baseDirectory, revision);
+
+    Map<String, Long> testDurations = new HashMap<String, Long>();
+
+    for (File metricsFile : ResultFiles.getFiles(baseDirectory, revision, Constants.METRICS_FILE)) {
+      try (BufferedReader input = new BufferedReader(new FileReader(metricsFile))) {
+        String line = null;
+
+        while ((line = input.readLine()) != null) {
+          String[] tokens = line.split(Constants.METRICS_FILE_SEPARATOR);
+
+          if (tokens.length < 2) {
+            continue;
+          }
+
+          testDurations.put(tokens[0], Long.valueOf(tokens[1]));
+        }
+      }
+    }
+
+    Map<String, Long> classDurations = new TreeMap<String, Long>();
+
+    for (Map.Entry<String, Long> entry : testDurations.entrySet()) {
+      String testName = hashToTestMap.get(entry.getKey());
+
+      if (testName == null) {
+        getLog().warn(String.format("Unknown test with hash '%s'.", entry.getKey()));
+
+        continue;
+      }
+
+      String className = TestInfo.getClassName(testName);
+      Long duration = classDurations.get(className);
+
+      classDurations.put(className, (duration == null ? 0 : duration) + entry.getValue());
+    }
+
+    return classDurations;
+  }
+
+  /**
+   * Adds the test classes which have no recorded duration with the median duration of the known classes.
+   *
+   * @param durations
+   *          The durations of the test classes.
+   */
+  private void addUnknownClasses(Map<String, Long> durations) {
+    if (!testClassesDirectory.isDirectory()) {
+      return;
+    }
+
+    List<Long> known = new ArrayList<Long>(durations.values());
+
+    Collections.sort(known);
+
+    long median = known.isEmpty() ? 1 : known.get(known.size() / 2);
+
+    DirectoryScanner scanner = new DirectoryScanner();
+
+    scanner.setBasedir(testClassesDirectory);
+    scanner.setIncludes(includes);
+    scanner.setExcludes(excludes);
+    scanner.scan();
+
+    int unknown = 0;
+
+    for (String path : scanner.getIncludedFiles()) {
+      String className = path.substring(0, path.length() - ".class".length()).replace(File.separatorChar, '.');
+
+      if (!durations.containsKey(className)) {
+        durations.put(className, median);
+
+        unknown++;
+      }
+    }
+
+    if (unknown > 0) {
+      getLog().info(String.format("%d test classes without recorded duration are assumed to take %dus.", unknown, median));
+    }
+  }
+
+  /**
+   * Assigns the test classes to the shards by the longest-processing-time-first rule.
+   *
+   * @param durations
+   *          The durations of the test classes.
+   *
+   * @return The shards.
+   */
+  private List<Shard> plan(Map<String, Long> durations) {
+    List<Map.Entry<String, Long>> classes = new ArrayList<Map.Entry<String, Long>>(durations.entrySet());
+
+    // The longest classes first, ties are broken by the name so the plan is reproducible.
+    Collections.sort(classes, new Comparator<Map.Entry<String, Long>>() {
+      @Override
+      public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+        int result = b.getValue().compareTo(a.getValue());
+
+        return result != 0 ? result : a.getKey().compareTo(b.getKey());
+      }
+    });
+
+    List<Shard> plan = new ArrayList<Shard>();
+
+    PriorityQueue<Shard> queue = new PriorityQueue<Shard>(shards, new Comparator<Shard>() {
+      @Override
+      public int compare(Shard a, Shard b) {
+        int result = Long.compare(a.duration, b.duration);
+
+        return result != 0 ? result : Integer.compare(a.index, b.index);
+      }
+    });
+
+    for (int i = 1; i <= shards; i++) {
+      Shard shard = new Shard(i);
+
+      plan.add(shard);
+      queue.add(shard);
+    }
+
+    for (Map.Entry<String, Long> entry : classes) {
+      Shard shard = queue.poll();
+
+      shard.classNames.add(entry.getKey());
+      shard.duration += entry.getValue();
+      shard.longestClass = Math.max(shard.longestClass, entry.getValue());
+
+      queue.add(shard);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Writes the include list of every shard and logs the estimated durations. The include lists of a previous plan are deleted first, so a
+   * plan with fewer shards does not leave stale lists behind.
+   *
+   * @param plan
+   *          The shards.
+   *
+   * @throws IOException
+   */
+  private void writeShards(List<Shard> plan) throws IOException {
+    outputDirectory.mkdirs();
+
+    DirectoryScanner scanner = new DirectoryScanner();
+
+    scanner.setBasedir(outputDirectory);
+    scanner.setIncludes(new String[] { "shard*.includes" });
+    scanner.scan();
+
+    for (String fileName : scanner.getIncludedFiles()) {
+      Files.delete(new File(outputDirectory, fileName).toPath());
+    }
+
+    long total = 0;
+    long longest = 0;
+    long longestClass = 0;
+
+    for (Shard shard : plan) {
+      File includesFile = new File(outputDirectory, String.format("shard%d.includes", shard.index));
+
+      Collections.sort(shard.classNames);
+
+      try (BufferedWriter output = new BufferedWriter(new FileWriter(includesFile))) {
+        output.write(String.format("# shard %d of %d, %d test classes, estimated duration %dus\n", shard.index, plan.size(), shard.classNames.size(), shard.duration));
+
+        for (String className : shard.classNames) {
+          output.write(className.replace('.', '/') + ".java\n");
+        }
+      }
+
+      getLog().info(String.format("Shard %d: %d test classes, estimated duration %dms.", shard.index, shard.classNames.size(), shard.duration / 1000));
+
+      total += shard.duration;
+      longest = Math.max(longest, shard.duration);
+      longestClass = Math.max(longestClass, shard.longestClass);
+    }
+
+    // No plan can be faster than an even split, nor than the longest class, which cannot be split.
+    long lowerBound = Math.max(total / plan.size(), longestClass);
+
+    getLog().info(String.format("Estimated wall-clock time is %dms, the lower bound is %dms.", longest / 1000, lowerBound / 1000));
+  }
+
+  /**
+   * The test classes assigned to a shard.
+   */
+  private static class Shard {
+
+    private final int index;
+
+    private final List<String> classNames = new ArrayList<String>();
+
+    /**
+     * The sum of the durations of the classes in microseconds.
+     */
+    private long duration;
+
+    /**
+     * The duration of the longest class in microseconds.
+     */
+    private long longestClass;
+
+    Shard(int index) {
+      this.index = index;
+    }
+
+  }
+
+}
@@ -15,8 +15,15 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -31,30 +38,60 @@ public class SimpleInstrumentationListener extends RunListener implements ITestL
     private static File outputDirectory;
 
     /**
-     * Name of the actual test
+     * The ids of the test names.
      */
-    private static String actualTest;
+    private static ConcurrentMap<String, Integer> testIds;
 
     /**
-     * List of tests that executed the instrumented code.
+     * The ids of the mutation identifiers.
      */
-    private static Set<String> coveringTests;
+    private static ConcurrentMap<String, Integer> mutationIds;
+
+    /**
+     * The next unused mutation id.
+     */
+    private static AtomicInteger nextMutationId;
+
+    /**
+     * The test running on the actual thread. The threads started by a test inherit it, so their hits are attributed to the test as well.
+     */
+    private static InheritableThreadLocal<TestRecord> actualTest;
+
+    /**
+     * The ids of the tests that executed the instrumented code.
+     */
+    private static BitSet coveringTests;
+
+    /**
+     * The sorted ids of the mutations executed by the tests keyed by the test ids.
+     */
+    private static Map<Integer, int[]> testMutations;
+
+    /**
+     * The outputs to write, set by the {@link Constants#MUTATION_OUTPUT_PROPERTY} system property.
+     */
+    private static String mutationOutput = System.getProperty(Constants.MUTATION_OUTPUT_PROPERTY, "csv");
 
     /**
      * Initializes the output directory and the log output stream.
      */
     static {
         try {
-            coveringTests = new HashSet<>();
+            testIds = new ConcurrentHashMap<>();
+            mutationIds = new ConcurrentHashMap<>();
+            nextMutationId = new AtomicInteger();
+            actualTest = new InheritableThreadLocal<>();
+            coveringTests = new BitSet();
+            testMutations = new HashMap<>();
 
-            outputDirectory = new File(Constants.BASE_DIR);
+            outputDirectory = ForkSettings.getBaseDirectory();
 
             if (!outputDirectory.exists()) {
                 outputDirectory.mkdirs();
             }
 
             // Configuring the logger.
-            FileHandler fileHandler = new FileHandler(new File(Constants.BASE_DIR, "SimpleInstrumentationListener.log").getAbsolutePath(), true);
+            FileHandler fileHandler = new FileHandler(new File(outputDirectory, ForkSettings.getShardName("SimpleInstrumentationListener") + ".log").getAbsolutePath(), true);
             fileHandler.setFormatter(new SimpleFormatter());
 
             LOGGER.addHandler(fileHandler);
@@ -69,8 +106,10 @@ public class SimpleInstrumentationListener extends RunListener implements ITestL
      * Manual instrumenter. Adds the actual test to coverage.
      */
     public static boolean recordCoverage() {
-        if (actualTest != null) {
-            coveringTests.add(actualTest);
+        TestRecord test = actualTest.get();
+
+        if (test != null && !test.covered) {
+            test.covered = true;
         }
         
         return true;
@@ -78,46 +117,170 @@ public class SimpleInstrumentationListener extends RunListener implements ITestL
 
     /**
      * Manual instrumenter. Adds the actual test to coverage with mutation identifier.
+     * Only the id of the mutation is recorded, so the call does not allocate once the mutation has been seen. The call can be made from
+     * any thread, the hit is attributed to the test running on the thread or on the thread which started it.
      *
      * @param mutationId
      *          Mutation identifier
      */
     public static boolean recordCoverage(String mutationId) {
-        if (actualTest != null) {
-            coveringTests.add(actualTest + ":" + mutationId);
+        TestRecord test = actualTest.get();
+
+        if (test != null) {
+            Integer id = mutationIds.get(mutationId);
+
+            if (id == null) {
+                id = getMutationId(mutationId);
+            }
+
+            test.mutations.set(id);
         }
         
         return true;
     }
 
+    /**
+     * Assigns an id to a mutation identifier which has not been seen yet.
+     */
+    private static Integer getMutationId(String mutationId) {
+        Integer id = nextMutationId.getAndIncrement();
+        Integer previousId = mutationIds.putIfAbsent(mutationId, id);
+
+        // An id lost in a race leaves an unused gap, which is ignored by the dump.
+        return previousId == null ? id : previousId;
+    }
+
+    /**
+     * Starts recording the coverage of a test on the actual thread.
+     *
+     * @param testName
+     *          The name of the test.
+     */
+    private static void startTest(String testName) {
+        finishTest();
+
+        Integer id = testIds.get(testName);
+
+        if (id == null) {
+            synchronized (testIds) {
+                id = testIds.get(testName);
+
+                if (id == null) {
+                    id = testIds.size();
+
+                    testIds.put(testName, id);
+                }
+            }
+        }
+
+        actualTest.set(new TestRecord(id));
+    }
+
+    /**
+     * Stores the coverage of the test running on the actual thread.
+     */
+    private static void finishTest() {
+        TestRecord test = actualTest.get();
+
+        if (test == null) {
+            return;
+        }
+
+        actualTest.remove();
+
+        int[] mutations = test.mutations.toArray();
+
+        synchronized (testMutations) {
+            if (test.covered) {
+                coveringTests.set(test.id);
+            }
+
+            if (mutations.length > 0) {
+                testMutations.put(test.id, union(testMutations.get(test.id), mutations));
+            }
+        }
+    }
+
+    /**
+     * Inverts a mapping of names to ids. The array is sized by the largest id of the mapping, so the names registered by other threads while
+     * the mapping is read cannot fall outside of it.
+     *
+     * @return The names at the positions of their ids, null at the unused ids.
+     */
+    private static String[] getNames(Map<String, Integer> ids) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(ids.entrySet());
+        int size = 0;
+
+        for (Map.Entry<String, Integer> entry : entries) {
+            size = Math.max(size, entry.getValue() + 1);
+        }
+
+        String[] names = new String[size];
+
+        for (Map.Entry<String, Integer> entry : entries) {
+            names[entry.getValue()] = entry.getKey();
+        }
+
+        return names;
+    }
+
+    /**
+     * Merges two sorted sets of ids.
+     *
+     * @return The sorted union of the sets, either of them may be null.
+     */
+    private static int[] union(int[] first, int[] second) {
+        if (first == null) {
+            return second;
+        }
+
+        int[] result = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+
+        while (i < first.length || j < second.length) {
+            if (j == second.length || (i < first.length && first[i] < second[j])) {
+                result[k++] = first[i++];
+            } else if (i == first.length || second[j] < first[i]) {
+                result[k++] = second[j++];
+            } else {
+                result[k++] = first[i++];
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, k);
+    }
+
     // //////////////////////////////////////////////////////////////////////////
     // JUnit ////////////////////////////////////////////////////////////////////
     // //////////////////////////////////////////////////////////////////////////
 
     @Override
     public void testStarted(Description description) throws Exception {
-        actualTest = TestInfo.getTestName(description);
+        startTest(TestInfo.getTestName(description));
 
         super.testStarted(description);
     }
 
     @Override
     public void testFinished(Description description) throws Exception {
-        actualTest = null;
+        finishTest();
 
         super.testFinished(description);
     }
 
     @Override
     public void testIgnored(Description description) throws Exception {
-        actualTest = null;
+        finishTest();
 
         super.testIgnored(description);
     }
 
     @Override
     public void testAssumptionFailure(Failure failure) {
-        actualTest = null;
+        finishTest();
 
         super.testAssumptionFailure(failure);
     }
@@ -135,27 +298,27 @@ public class SimpleInstrumentationListener extends RunListener implements ITestL
 
     @Override
     public void onTestStart(ITestResult iTestResult) {
-        actualTest = TestInfo.getTestName(iTestResult);
+        startTest(TestInfo.getTestName(iTestResult));
     }
 
     @Override
     public void onTestSuccess(ITestResult iTestResult) {
-        actualTest = null;
+        finishTest();
     }
 
     @Override
     public void onTestFailure(ITestResult iTestResult) {
-        actualTest = null;
+        finishTest();
     }
 
     @Override
     public void onTestSkipped(ITestResult iTestResult) {
-        actualTest = null;
+        finishTest();
     }
 
     @Override
     public void onTestFailedButWithinSuccessPercentage(ITestResult iTestResult) {
-        actualTest = null;
+        finishTest();
     }
 
     @Override
@@ -168,21 +331,104 @@ public class SimpleInstrumentationListener extends RunListener implements ITestL
         dumpResults();
     }
 
+    /**
+     * Writes the recorded coverage, the test names and mutation identifiers are only materialized here. Depending on the
+     * {@link #mutationOutput} the coverage is appended to TestCoverage.csv as test:mutationId lines and/or stored as a mutant by test matrix
+     * in TestCoverage.matrix, see {@link MutationMatrixWriter}.
+     */
     private void dumpResults() {
-        // Dump data
-        try {
-            PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(Constants.BASE_DIR, "TestCoverage.csv").getAbsolutePath(), true)));
-            for (String test : coveringTests) {
-                out.println(test);
+        finishTest();
+
+        // The names are read under the lock of the recorded coverage, so every test and mutation of the coverage has a name.
+        synchronized (testMutations) {
+            String[] testNames;
+
+            synchronized (testIds) {
+                testNames = getNames(testIds);
+            }
+
+            String[] mutationNames = getNames(mutationIds);
+
+            if (!"csv".equalsIgnoreCase(mutationOutput)) {
+                dumpMatrix(testNames, mutationNames);
             }
 
-            out.close();
+            if ("matrix".equalsIgnoreCase(mutationOutput)) {
+                return;
+            }
 
-            LOGGER.info("Simple instrumentation listener has dumped coverage data succesfully (" + coveringTests.size() + " tests were recorded).");
-        } catch (FileNotFoundException e) {
-            LOGGER.info("Simple instrumentation listener has failed: Output file not found.");
+            // Dump data
+            try {
+                PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(outputDirectory, "TestCoverage.csv").getAbsolutePath(), true)));
+                int lines = 0;
+
+                for (int test = 0; test < testNames.length; test++) {
+                    if (coveringTests.get(test)) {
+                        out.println(testNames[test]);
+                        lines++;
+                    }
+
+                    int[] mutations = testMutations.get(test);
+
+                    if (mutations != null) {
+                        for (int mutation : mutations) {
+                            out.println(testNames[test] + ":" + mutationNames[mutation]);
+                        }
+
+                        lines += mutations.length;
+                    }
+                }
+
+                out.close();
+
+                LOGGER.info("Simple instrumentation listener has dumped coverage data succesfully (" + lines + " tests were recorded).");
+            } catch (FileNotFoundException e) {
+                LOGGER.info("Simple instrumentation listener has failed: Output file not found.");
+            } catch (IOException e) {
+                LOGGER.info("Simple instrumentation listener has failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the recorded coverage as a mutant by test matrix. The matrix holds every test recorded so far, so it replaces the previous one.
+     * If the tests are forked, every fork writes its own TestCoverage.matrix.f&lt;fork&gt; shard, see {@link MutationMatrixReader}.
+     */
+    private void dumpMatrix(String[] testNames, String[] mutationNames) {
+        File matrixFile = new File(outputDirectory, ForkSettings.getShardName("TestCoverage.matrix"));
+
+        try {
+            synchronized (testMutations) {
+                MutationMatrixWriter.write(matrixFile, testNames, coveringTests, mutationNames, testMutations);
+            }
+
+            LOGGER.info("Simple instrumentation listener has dumped the mutation matrix succesfully (" + testNames.length + " tests, "
+                    + mutationIds.size() + " mutations).");
         } catch (IOException e) {
-            LOGGER.info("Simple instrumentation listener has failed: " + e.getMessage());
+            LOGGER.warning("Cannot dump the mutation matrix because: " + e.getMessage());
         }
     }
+
+    /**
+     * The coverage of a running test.
+     */
+    private static class TestRecord {
+
+        private final int id;
+
+        /**
+         * Whether the test has executed the instrumented code.
+         */
+        private volatile boolean covered;
+
+        /**
+         * The ids of the mutations executed by the test.
+         */
+        private final ConcurrentBitSet mutations = new ConcurrentBitSet();
+
+        TestRecord(int id) {
+            this.id = id;
+        }
+
+    }
 }
@@ -0,0 +1,306 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Holds the {@link ClassStructure structures} of the classes of a project keyed by their JaCoCo class ids. The class files are read and
+ * parsed only once, afterwards the coverage of arbitrary execution data can be calculated without touching the bytecode again.
+ *
+ * The structures can also be persisted in a cache file, see {@link #analyze(File, File)}. Since a class id is the checksum of the class file,
+ * a cached structure is valid as long as a class with the same id exists, so later runs only parse the classes which have changed.
+ *
+ * The cache is immutable after it has been built, so it can be shared between threads.
+ */
+public class StructureCache {
+
+  private static final Logger LOGGER = Logger.getLogger(StructureCache.class.getName());
+
+  static final int MAGIC = 0x534f4453;
+
+  /**
+   * The version of the cache file, it has to be increased whenever the analysis or the layout of the structures changes.
+   */
+  static final short VERSION = 1;
+
+  /**
+   * The structures of the classes keyed by their JaCoCo class ids.
+   */
+  private final Map<Long, ClassStructure> classes = new LinkedHashMap<Long, ClassStructure>();
+
+  /**
+   * The number of classes which were restored from the cache file instead of being analyzed.
+   */
+  private int cachedCount;
+
+  private StructureCache() {
+  }
+
+  /**
+   * Analyzes the classes of a directory, a jar file or a class file. Every format accepted by JaCoCo's {@link Analyzer#analyzeAll(File)} is
+   * supported.
+   *
+   * @param file
+   *          The file or directory to analyze.
+   *
+   * @return The structures of the classes.
+   *
+   * @throws IOException
+   */
+  public static StructureCache analyze(File file) throws IOException {
+    return analyze(file, null);
+  }
+
+  /**
+   * Analyzes the classes of a directory, a jar file or a class file like {@link #analyze(File)}, but the classes which are found in the
+   * cache file are not parsed again. If any class had to be analyzed or a cached class no longer exists, the cache file is rewritten with
+   * the structures of the actual classes. An unreadable cache file is ignored.
+   *
+   * @param file
+   *          The file or directory to analyze.
+   * @param cacheFile
+   *          The file which stores the structures between the runs, null if they should not be cached.
+   *
+   * @return The structures of the classes.
+   *
+   * @throws IOException
+   */
+  public static StructureCache analyze(File file, File cacheFile) throws IOException {
+    final StructureCache cache = new StructureCache();
+    final Map<Long, ClassStructure> cachedClasses = readCache(cacheFile);
+
+    // The analyzer is only used to walk the directories and archives, the classes themselves are visited by our structure analyzer.
+    Analyzer analyzer = new Analyzer(new ExecutionDataStore(), null) {
+      @Override
+      public void analyzeClass(InputStream input, String name) throws IOException {
+        analyzeClass(IOUtil.toByteArray(input), name);
+      }
+
+      @Override
+      public void analyzeClass(byte[] buffer, String name) throws IOException {
+        long classId = CRC64.checksum(buffer);
+        ClassStructure structure = cachedClasses.get(classId);
+
+        if (structure == null) {
+          super.analyzeClass(buffer, name);
+        } else if (!cache.classes.containsKey(classId)) {
+          cache.classes.put(classId, structure);
+          cache.cachedCount++;
+        }
+      }
+
+      @Override
+      public void analyzeClass(ClassReader reader) {
+        long classId = CRC64.checksum(reader.b);
+
+        if (!cache.classes.containsKey(classId)) {
+          ClassStructureAnalyzer structureAnalyzer = new ClassStructureAnalyzer(classId);
+
+          reader.accept(new ClassProbesAdapter(structureAnalyzer, false), 0);
+
+          cache.classes.put(classId, structureAnalyzer.getStructure());
+        }
+      }
+    };
+
+    analyzer.analyzeAll(file);
+
+    if (cacheFile != null && (cache.cachedCount < cache.classes.size() || cache.cachedCount < cachedClasses.size())) {
+      cache.writeCache(cacheFile);
+    }
+
+    return cache;
+  }
+
+  /**
+   * Reads the structures stored in a cache file.
+   *
+   * @return The structures keyed by their class ids, empty if the file does not exist or cannot be read.
+   */
+  private static Map<Long, ClassStructure> readCache(File cacheFile) {
+    Map<Long, ClassStructure> cachedClasses = new HashMap<Long, ClassStructure>();
+
+    if (cacheFile == null || !cacheFile.exists()) {
+      return cachedClasses;
+    }
+
+    // The file is read at once, so the sizes of the tables can be checked against the bytes left.
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath())))) {
+      if (input.readInt() != MAGIC || input.readShort() != VERSION) {
+        return cachedClasses;
+      }
+
+      int classCount = IOUtils.readCount(input, 8);
+
+      for (int i = 0; i < classCount; i++) {
+        ClassStructure structure = ClassStructure.read(input);
+
+        cachedClasses.put(structure.getId(), structure);
+      }
+    } catch (IOException | RuntimeException e) {
+      // A corrupt cache may also fail with a runtime exception, e.g. on a negative size.
+      LOGGER.warning("Cannot read the structure cache because: " + e);
+
+      cachedClasses.clear();
+    }
+
+    return cachedClasses;
+  }
+
+  /**
+   * Writes the structures into a cache file. The structures are written into a temporary file of their own, which replaces the cache file
+   * at once, so neither a concurrent reader nor a concurrent writer sees a partial cache.
+   */
+  private void writeCache(File cacheFile) {
+    File tempFile = null;
+
+    try {
+      File cacheDirectory = cacheFile.getAbsoluteFile().getParentFile();
+
+      cacheDirectory.mkdirs();
+
+      tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDirectory);
+
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+
+        output.writeInt(classes.size());
+
+        for (ClassStructure structure : classes.values()) {
+          structure.write(output);
+        }
+      }
+
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.warning("Cannot write the structure cache because: " + e.getMessage());
+
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * @return The structures of all classes.
+   */
+  public Collection<ClassStructure> getClasses() {
+    return Collections.unmodifiableCollection(classes.values());
+  }
+
+  /**
+   * @return The number of classes which were restored from the cache file instead of being analyzed.
+   */
+  public int getCachedCount() {
+    return cachedCount;
+  }
+
+  /**
+   * @param classId
+   *          A JaCoCo class id.
+   *
+   * @return The structure of the class or null if there is no such class.
+   */
+  public ClassStructure getClass(long classId) {
+    return classes.get(classId);
+  }
+
+  /**
+   * Calculates the coverage of every class for the given execution data. The result is the same as the result of JaCoCo's {@link Analyzer}.
+   *
+   * @param executionData
+   *          The execution data of a test.
+   * @param coverageVisitor
+   *          The visitor which receives the coverage of the classes.
+   */
+  public void analyze(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor) {
+    for (ClassStructure structure : classes.values()) {
+      ExecutionData data = executionData.get(structure.getId());
+
+      boolean[] probes = null;
+      boolean noMatch = false;
+
+      if (data == null) {
+        noMatch = executionData.contains(structure.getName());
+      } else {
+        probes = data.getProbes();
+      }
+
+      coverageVisitor.visitCoverage(structure.createCoverage(probes, noMatch));
+    }
+  }
+
+  /**
+   * Calculates the coverage of the classes which have at least one executed probe in the given execution data. The other classes are not
+   * visited at all, so the cost depends on the number of classes touched by the test instead of the size of the project.
+   *
+   * @param executionData
+   *          The execution data of a test.
+   * @param coverageVisitor
+   *          The visitor which receives the coverage of the covered classes.
+   */
+  public void analyzeCovered(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor) {
+    for (ExecutionData data : executionData.getContents()) {
+      ClassStructure structure = classes.get(data.getId());
+
+      if (structure != null && hasHits(data.getProbes())) {
+        coverageVisitor.visitCoverage(structure.createCoverage(data.getProbes(), false));
+      }
+    }
+  }
+
+  /**
+   * @param executionData
+   *          The execution data of a test.
+   *
+   * @return The ids of the classes which are analyzed by {@link #analyzeCovered(ExecutionDataStore, ICoverageVisitor)}.
+   */
+  public List<Long> getCoveredClassIds(ExecutionDataStore executionData) {
+    List<Long> classIds = new ArrayList<Long>();
+
+    for (ExecutionData data : executionData.getContents()) {
+      if (classes.containsKey(data.getId()) && hasHits(data.getProbes())) {
+        classIds.add(data.getId());
+      }
+    }
+
+    return classIds;
+  }
+
+  private static boolean hasHits(boolean[] probes) {
+    for (boolean probe : probes) {
+      if (probe) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
@@ -0,0 +1,86 @@
+package hu.sed.soda.tools;
+
+/**
+ * Spectrum-based fault localization formulas, which rank the code elements by the number of failing and passing tests covering them.
+ */
+public enum SuspiciousnessFormula {
+
+  OCHIAI("ochiai") {
+    @Override
+    public double score(int ef, int ep, int nf, int np) {
+      double denominator = Math.sqrt((double) (ef + nf) * (ef + ep));
+
+      return denominator == 0 ? 0 : ef / denominator;
+    }
+  },
+
+  TARANTULA("tarantula") {
+    @Override
+    public double score(int ef, int ep, int nf, int np) {
+      double failed = ef + nf == 0 ? 0 : (double) ef / (ef + nf);
+      double passed = ep + np == 0 ? 0 : (double) ep / (ep + np);
+
+      return failed + passed == 0 ? 0 : failed / (failed + passed);
+    }
+  },
+
+  /**
+   * DStar with the exponent 2. Elements which are covered by every failing test and by no passing test get an infinite score.
+   */
+  DSTAR("dstar") {
+    @Override
+    public double score(int ef, int ep, int nf, int np) {
+      if (ef == 0) {
+        return 0;
+      }
+
+      return ep + nf == 0 ? Double.POSITIVE_INFINITY : (double) ef * ef / (ep + nf);
+    }
+  };
+
+  private final String name;
+
+  private SuspiciousnessFormula(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Calculates the suspiciousness of an element.
+   * 
+   * @param ef
+   *          The number of failing tests covering the element.
+   * @param ep
+   *          The number of passing tests covering the element.
+   * @param nf
+   *          The number of failing tests not covering the element.
+   * @param np
+   *          The number of passing tests not covering the element.
+   * 
+   * @return The suspiciousness score.
+   */
+  public abstract double score(int ef, int ep, int nf, int np);
+
+  /**
+   * @param name
+   *          The name of a formula.
+   * 
+   * @return The formula with the given name.
+   * 
+   * @throws IllegalArgumentException
+   *           If there is no such formula.
+   */
+  public static SuspiciousnessFormula fromName(String name) {
+    for (SuspiciousnessFormula formula : values()) {
+      if (formula.name.equalsIgnoreCase(name.trim())) {
+        return formula;
+      }
+    }
+
+    throw new IllegalArgumentException(String.format("Unknown formula '%s'.", name));
+  }
+
+}
@@ -1,8 +1,5 @@
 package hu.sed.soda.tools;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.runner.Description;
 import org.testng.ITestResult;
@@ -18,9 +15,10 @@ public class TestInfo {
   private String testName;
 
   /**
-   * The statuses of the test.
+   * The status of the test. For the calculated statuses only the one with the highest {@link #getPriority(TestStatus) priority} is kept,
+   * the others would not change the final status.
    */
-  List<TestStatus> statuses;
+  private TestStatus status;
 
   /**
    * Whether the status of the test is concrete or it should be calculated.
@@ -57,6 +55,32 @@ public class TestInfo {
     return sb.toString();
   }
 
+  /**
+   * @return The name of the class of a test, i.e. the test name without the method name.
+   */
+  public static String getClassName(String testName) {
+    int index = getMethodSeparator(testName);
+
+    return index < 0 ? testName : testName.substring(0, index);
+  }
+
+  /**
+   * @return The name of the method of a test, empty if the test name has no method name.
+   */
+  public static String getMethodName(String testName) {
+    return testName.substring(getMethodSeparator(testName) + 1);
+  }
+
+  /**
+   * @return The index of the dot between the class and the method name of a test. The parameters of a parameterized test, e.g. test[1.5],
+   *         may contain dots, so it is the last dot before them.
+   */
+  private static int getMethodSeparator(String testName) {
+    int parameters = testName.indexOf('[');
+
+    return testName.lastIndexOf('.', parameters < 0 ? testName.length() : parameters);
+  }
+
   /**
    * Creates a test information object.
    * 
@@ -65,7 +89,6 @@ public class TestInfo {
    */
   public TestInfo(String testName) {
     this.testName = testName;
-    this.statuses = new LinkedList<TestStatus>();
     this.isConcrete = false;
   }
 
@@ -80,7 +103,7 @@ public class TestInfo {
   public TestInfo(String testName, TestStatus status) {
     this(testName);
 
-    this.statuses.add(status);
+    this.status = status;
     this.isConcrete = true;
   }
 
@@ -88,10 +111,6 @@ public class TestInfo {
     return testName;
   }
 
-  public List<TestStatus> getStatuses() {
-    return statuses;
-  }
-
   /**
    * @return The hash of the test info.
    */
@@ -100,38 +119,43 @@ public class TestInfo {
   }
 
   /**
-   * Calculates the final status of a test based on the list of statuses that occurred during the execution of the test.
+   * Calculates the final status of a test based on the statuses that occurred during the execution of the test.
    * 
    * @return The final status.
    */
   public TestStatus getFinalStatus() {
-    TestStatus status = null;
-
-    if (isConcrete) {
-      status = statuses.get(0);
-    } else {
-      status = JUnitStatus.SUCCEEDED;
-
-      if (statuses.contains(JUnitStatus.IGNORED)) {
-        status = JUnitStatus.IGNORED;
-      } else if (statuses.contains(JUnitStatus.ASSUMPTION_FAILED)) {
-        status = JUnitStatus.ASSUMPTION_FAILED;
-      } else if (statuses.contains(JUnitStatus.FAILED)) {
-        status = JUnitStatus.FAILED;
-      }
+    if (isConcrete || getPriority(status) > 0) {
+      return status;
     }
 
-    return status;
+    return JUnitStatus.SUCCEEDED;
   }
 
   /**
-   * Adds a status to the list of statuses.
+   * Records a status which occurred during the execution of the test.
    * 
    * @param status
    *          An arbitrary test status.
    */
   public void addStatus(JUnitStatus status) {
-    statuses.add(status);
+    if (getPriority(status) > getPriority(this.status)) {
+      this.status = status;
+    }
+  }
+
+  /**
+   * @return The priority of a status in the calculation of the final status, 0 if it does not change the default success.
+   */
+  private static int getPriority(TestStatus status) {
+    if (status == JUnitStatus.IGNORED) {
+      return 3;
+    } else if (status == JUnitStatus.ASSUMPTION_FAILED) {
+      return 2;
+    } else if (status == JUnitStatus.FAILED) {
+      return 1;
+    }
+
+    return 0;
   }
 
 }
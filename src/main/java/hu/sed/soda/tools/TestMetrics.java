@@ -0,0 +1,273 @@
+package hu.sed.soda.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time a test took and the overhead of collecting its coverage. The times are measured in nanoseconds.
+ *
+ * The save time and the written bytes are recorded by the {@link CoverageSink} which stores the data, possibly on a background thread. The
+ * metrics are {@link #isComplete() complete} once the data has been written or its writing has failed, and at the latest when the sink has
+ * been closed.
+ */
+public class TestMetrics {
+
+  /**
+   * The hash of the name of the test.
+   */
+  private final String testHash;
+
+  /**
+   * The duration of the test itself, without the coverage collection of the listener.
+   */
+  private long wallTime;
+
+  /**
+   * The time spent in resetting the coverage before the test.
+   */
+  private long resetTime;
+
+  /**
+   * The time spent in dumping and resetting the coverage after the test.
+   */
+  private long dumpTime;
+
+  /**
+   * The time spent in serializing and writing the coverage data.
+   */
+  private volatile long saveTime;
+
+  /**
+   * The number of bytes written.
+   */
+  private volatile long bytes;
+
+  /**
+   * Whether the save time and the written bytes have been recorded.
+   */
+  private volatile boolean complete;
+
+  /**
+   * Creates the metrics of a test.
+   * 
+   * @param testHash
+   *          The hash of the name of the test.
+   */
+  public TestMetrics(String testHash) {
+    this.testHash = testHash;
+  }
+
+  public String getTestHash() {
+    return testHash;
+  }
+
+  public long getWallTime() {
+    return wallTime;
+  }
+
+  public void setWallTime(long wallTime) {
+    this.wallTime = wallTime;
+  }
+
+  public long getResetTime() {
+    return resetTime;
+  }
+
+  public void setResetTime(long resetTime) {
+    this.resetTime = resetTime;
+  }
+
+  public long getDumpTime() {
+    return dumpTime;
+  }
+
+  public void setDumpTime(long dumpTime) {
+    this.dumpTime = dumpTime;
+  }
+
+  public long getSaveTime() {
+    return saveTime;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Records that the coverage data of the test has been written.
+   * 
+   * @param saveTime
+   *          The time of serializing and writing the data.
+   * @param bytes
+   *          The number of bytes written.
+   */
+  public void setSave(long saveTime, long bytes) {
+    this.saveTime = saveTime;
+    this.bytes = bytes;
+
+    complete = true;
+  }
+
+  /**
+   * Records that the coverage data of the test will not be written, e.g. because its writing has failed.
+   */
+  public void setUnsaved() {
+    complete = true;
+  }
+
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Writes the metrics as a line of tab separated values: hash, wall, reset, dump and save times in microseconds, then the written bytes.
+   * 
+   * @param output
+   *          The output.
+   * 
+   * @throws IOException
+   */
+  public void write(Writer output) throws IOException {
+    String separator = Constants.METRICS_FILE_SEPARATOR;
+
+    output.write(testHash + separator + toMicros(wallTime) + separator + toMicros(resetTime) + separator + toMicros(dumpTime) + separator
+        + toMicros(saveTime) + separator + bytes + "\n");
+  }
+
+  private static long toMicros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  /**
+   * Collects the metrics of several tests for a summary: the total, the percentiles and a histogram with power of two buckets for every
+   * metric. Only the totals and the histograms are kept, so the memory used does not grow with the number of tests. The percentiles are
+   * estimated from the histograms: they are the upper bounds of their buckets (capped by the maximum), so they overestimate by less than a
+   * factor of two.
+   */
+  public static class Summary {
+
+    private final Distribution wall = new Distribution();
+
+    private final Distribution reset = new Distribution();
+
+    private final Distribution dump = new Distribution();
+
+    private final Distribution save = new Distribution();
+
+    private final Distribution written = new Distribution();
+
+    private int count;
+
+    /**
+     * Adds the metrics of a test.
+     *
+     * @param metrics
+     *          The complete metrics of the test.
+     */
+    public void add(TestMetrics metrics) {
+      wall.add(toMicros(metrics.wallTime));
+      reset.add(toMicros(metrics.resetTime));
+      dump.add(toMicros(metrics.dumpTime));
+      save.add(toMicros(metrics.saveTime));
+      written.add(metrics.bytes);
+
+      count++;
+    }
+
+    /**
+     * @return The number of tests added.
+     */
+    public int getCount() {
+      return count;
+    }
+
+    /**
+     * @return The summary in multiple lines.
+     */
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append(String.format("Metrics of %d tests:", count));
+
+      wall.summarize(sb, "wall (us)");
+      reset.summarize(sb, "reset (us)");
+      dump.summarize(sb, "dump (us)");
+      save.summarize(sb, "save (us)");
+      written.summarize(sb, "bytes");
+
+      return sb.toString();
+    }
+
+  }
+
+  /**
+   * The total, the maximum and the histogram of the values of a metric.
+   */
+  private static class Distribution {
+
+    /**
+     * Bucket i holds the values in [2^(i-1), 2^i), bucket 0 holds the zeros.
+     */
+    private final int[] buckets = new int[65];
+
+    private long total;
+
+    private long max;
+
+    private int count;
+
+    void add(long value) {
+      buckets[64 - Long.numberOfLeadingZeros(value)]++;
+
+      total += value;
+      max = Math.max(max, value);
+      count++;
+    }
+
+    void summarize(StringBuilder sb, String name) {
+      sb.append(String.format(Locale.ROOT, "%n  %-10s", name));
+
+      if (count == 0) {
+        return;
+      }
+
+      sb.append(String.format(Locale.ROOT, " total=%d p50=%d p90=%d p99=%d max=%d", total, percentile(50), percentile(90), percentile(99), max));
+
+      sb.append(" histogram=[");
+
+      String separator = "";
+
+      for (int i = 0; i < buckets.length; i++) {
+        if (buckets[i] > 0) {
+          sb.append(String.format("%s<%d:%d", separator, i == 0 ? 1 : 1L << i, buckets[i]));
+
+          separator = " ";
+        }
+      }
+
+      sb.append(']');
+    }
+
+    /**
+     * @return The upper bound of the bucket of the nearest-rank percentile, capped by the maximum.
+     */
+    private long percentile(int percent) {
+      int rank = Math.max(1, (int) Math.ceil(percent / 100.0 * count));
+
+      for (int i = 0; i < buckets.length; i++) {
+        rank -= buckets[i];
+
+        if (rank <= 0) {
+          return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+        }
+      }
+
+      return max;
+    }
+
+  }
+
+}
@@ -1,13 +1,10 @@
 package hu.sed.soda.tools;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -33,11 +30,14 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
   private static File outputDirectory;
     
   /**
-   * The version number of the program under test.
-   * 
-   * TODO: Get this value automatically.
+   * The version number of the program under test, set by the {@link Constants#REVISION_PROPERTY} system property.
+   */
+  private static String revision = ForkSettings.getRevision();
+
+  /**
+   * The directory of the outputs.
    */
-  private static String revision = "0";
+  private static File baseDirectory = ForkSettings.getBaseDirectory();
 
   /**
    * Numeric index of test for creating unique file names.
@@ -45,15 +45,25 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
   private static long testIndex = 0;
 
   /**
-   * The results of tests with method level granularity.
+   * Writes the results of tests with method level granularity as they finish, opened on demand.
    */
-  private static List<TestInfo> testResults = new LinkedList<TestInfo>();
+  private static TestResultsWriter resultsWriter;
 
   /**
    * Information about the test which is running at the moment.
    */
   private static TestInfo actualTestInfo = null;
 
+  /**
+   * The summary of the durations of the tests since the results were closed last.
+   */
+  private static TestMetrics.Summary metricsSummary = new TestMetrics.Summary();
+
+  /**
+   * The time at which the actual test has started.
+   */
+  private static long actualStartTime = 0;
+
   /**
    * Statistics about the test suite.
    */
@@ -64,14 +74,14 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
    */
   static {
     try {
-      outputDirectory = new File(Constants.BASE_DIR);
+      outputDirectory = baseDirectory;
 
       if (!outputDirectory.exists()) {
         outputDirectory.mkdirs();
       }
       
       // Configuring the logger.
-      FileHandler fileHandler = new FileHandler(new File(Constants.BASE_DIR, "CustomJUnitExecutionListener.log").getAbsolutePath(), true);
+      FileHandler fileHandler = new FileHandler(new File(baseDirectory, ForkSettings.getShardName("CustomJUnitExecutionListener") + ".log").getAbsolutePath(), true);
       fileHandler.setFormatter(new SimpleFormatter());
 
       LOGGER.addHandler(fileHandler);
@@ -88,30 +98,51 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
   }
 
   /**
-   * Writes the collected test results, and the hash mapping to files in the output directory.
-   * The results will be written into the <{@link Constants#BASE_DIR}>/<{@link #revisionNumber}>/TestResults.r<{@link #revision}> file.
-   * The mapping will be written into the <{@link Constants#BASE_DIR}>/<{@link #revisionNumber}>/{@link Constants#MAP_FILE}.r<{@link #revision}> file.
+   * Writes the result and the duration of a finished test, see {@link TestResultsWriter}. The hash to test name mapping is written too,
+   * because the metrics are keyed by the hashes of the test names.
    * 
-   * @param testResults
-   *          List of {@link TestInfo test information} object.
-   * @param revision
-   *          The version identifier of the actual program under test.
+   * @param result
+   *          The {@link TestInfo information} of the test.
+   * @param metrics
+   *          The duration of the test.
    */
-  public static void dumpTestResults() {
-    File resultsDir = new File(Constants.BASE_DIR, revision);
-    if (!resultsDir.exists()) {
-      resultsDir.mkdirs();
+  private static void writeTestResult(TestInfo result, TestMetrics metrics) {
+    try {
+      if (resultsWriter == null) {
+        resultsWriter = new TestResultsWriter(baseDirectory, revision, true);
+      }
+
+      resultsWriter.write(result);
+      resultsWriter.writeMetrics(metrics);
+    } catch (IOException e) {
+      LOGGER.warning("Cannot dump test results because: " + e.getMessage());
     }
 
-    File resultsFile = new File(resultsDir, String.format("TestResults.r%s", revision));
-    try (
-        BufferedWriter resultOutput = new BufferedWriter(new FileWriter(resultsFile, true));
-    ) {
-      for (TestInfo result : testResults) {
-        resultOutput.write(String.format("%s: %s\n", result.getFinalStatus().getOutcome(), result.getTestName()));
+    metricsSummary.add(metrics);
+  }
+
+  /**
+   * Closes the test results and the durations of the tests, which have been written as the tests finished.
+   * The results are written into the <{@link #baseDirectory}>/<{@link #revision}>/TestResults.r<{@link #revision}> file.
+   * The durations of the tests are written into the <{@link #baseDirectory}>/<{@link #revision}>/{@link Constants#METRICS_FILE}.r<{@link #revision}> file
+   * and summarized in the log.
+   * If the tests are forked every fork writes its own shards of these files, which are merged by the report goal.
+   */
+  public static void dumpTestResults() {
+    if (resultsWriter != null) {
+      try {
+        resultsWriter.close();
+      } catch (IOException e) {
+        LOGGER.warning("Cannot dump test results because: " + e.getMessage());
       }
-    } catch (IOException e) {
-      LOGGER.warning("Cannot, dump test results because: " + e.getMessage());
+
+      resultsWriter = null;
+    }
+
+    if (metricsSummary.getCount() > 0) {
+      LOGGER.info(metricsSummary.toString());
+
+      metricsSummary = new TestMetrics.Summary();
     }
   }
 
@@ -153,6 +184,7 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
   public void testStarted(Description description) throws Exception {
     actualTestInfo = new TestInfo(TestInfo.getTestName(description));
     handleEvent(description, JUnitStatus.STARTED);
+    actualStartTime = System.nanoTime();
     super.testStarted(description);
   }
 
@@ -172,8 +204,11 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
 
   @Override
   public void testFinished(Description description) throws Exception {
+    TestMetrics metrics = new TestMetrics(actualTestInfo.getHash());
+    metrics.setWallTime(System.nanoTime() - actualStartTime);
+
     handleEvent(description, JUnitStatus.FINISHED);
-    testResults.add(actualTestInfo);
+    writeTestResult(actualTestInfo, metrics);
     super.testFinished(description);
   }
 
@@ -207,7 +242,10 @@ public class TestResultsDumpListener extends RunListener implements ITestListene
     LOGGER.info(String.format("%s %s", testName, status));
 
     if (status != TestNGStatus.STARTED && status != TestNGStatus.SKIPPED) {
-      testResults.add(info);
+      TestMetrics metrics = new TestMetrics(info.getHash());
+      metrics.setWallTime(TimeUnit.MILLISECONDS.toNanos(result.getEndMillis() - result.getStartMillis()));
+
+      writeTestResult(info, metrics);
     }
   }
 
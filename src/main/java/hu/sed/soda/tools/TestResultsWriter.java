@@ -0,0 +1,153 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Appends the results of the tests and the mapping of their hashes to their names to the result files of a revision as soon as the tests
+ * have finished, so neither the memory use nor the results lost by a crashing fork grow with the length of the test suite.
+ *
+ * The results are written into the &lt;baseDirectory&gt;/&lt;revision&gt;/{@link Constants#RESULTS_FILE}.r&lt;revision&gt; file, the mapping into
+ * the &lt;baseDirectory&gt;/&lt;revision&gt;/{@link Constants#MAP_FILE}.r&lt;revision&gt; file, the {@link TestMetrics metrics} of the tests
+ * into the &lt;baseDirectory&gt;/&lt;revision&gt;/{@link Constants#METRICS_FILE}.r&lt;revision&gt; file. If the tests are forked every fork
+ * writes its own shards of these files. The records are buffered and flushed after every {@link Constants#RESULTS_FLUSH_PROPERTY} tests.
+ */
+public class TestResultsWriter implements Closeable {
+
+  private final File resultsDir;
+
+  private final String revision;
+
+  private final BufferedWriter resultOutput;
+
+  /**
+   * The output of the mapping, null if only the results are written.
+   */
+  private final BufferedWriter mapOutput;
+
+  /**
+   * The output of the metrics, opened when the first metrics are written.
+   */
+  private BufferedWriter metricsOutput;
+
+  /**
+   * The number of tests after which the outputs are flushed.
+   */
+  private final int flushInterval = Math.max(1, Integer.getInteger(Constants.RESULTS_FLUSH_PROPERTY, Constants.RESULTS_FLUSH_INTERVAL));
+
+  /**
+   * The number of tests written since the last flush.
+   */
+  private int pending;
+
+  /**
+   * Opens the result files for appending.
+   *
+   * @param baseDirectory
+   *          The directory of the outputs.
+   * @param revision
+   *          The version identifier of the actual program under test.
+   * @param writeMap
+   *          Whether the mapping should be written too.
+   *
+   * @throws IOException
+   */
+  public TestResultsWriter(File baseDirectory, String revision, boolean writeMap) throws IOException {
+    resultsDir = new File(baseDirectory, revision);
+    this.revision = revision;
+
+    if (!resultsDir.exists()) {
+      resultsDir.mkdirs();
+    }
+
+    resultOutput = new BufferedWriter(new FileWriter(new File(resultsDir, ForkSettings.getShardName(String.format("%s.r%s", Constants.RESULTS_FILE, revision))), true));
+
+    if (writeMap) {
+      try {
+        mapOutput = new BufferedWriter(new FileWriter(new File(resultsDir, ForkSettings.getShardName(String.format("%s.r%s", Constants.MAP_FILE, revision))), true));
+      } catch (IOException e) {
+        resultOutput.close();
+
+        throw e;
+      }
+    } else {
+      mapOutput = null;
+    }
+  }
+
+  /**
+   * Writes the final status of a test and its mapping.
+   *
+   * @param result
+   *          The {@link TestInfo information} of a finished test.
+   *
+   * @throws IOException
+   */
+  public void write(TestInfo result) throws IOException {
+    resultOutput.write(String.format("%s: %s\n", result.getFinalStatus().getOutcome(), result.getTestName()));
+
+    if (mapOutput != null) {
+      mapOutput.write(String.format("%s%s%s\n", result.getHash(), Constants.MAP_FILE_SEPARATOR, result.getTestName()));
+    }
+
+    if (++pending >= flushInterval) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes the metrics of a test. They are flushed together with the results.
+   *
+   * @param metrics
+   *          The {@link TestMetrics#isComplete() complete} metrics of a test.
+   *
+   * @throws IOException
+   */
+  public void writeMetrics(TestMetrics metrics) throws IOException {
+    if (metricsOutput == null) {
+      metricsOutput = new BufferedWriter(new FileWriter(new File(resultsDir, ForkSettings.getShardName(String.format("%s.r%s", Constants.METRICS_FILE, revision))), true));
+    }
+
+    metrics.write(metricsOutput);
+  }
+
+  /**
+   * Writes the buffered records to the files.
+   *
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    resultOutput.flush();
+
+    if (mapOutput != null) {
+      mapOutput.flush();
+    }
+
+    if (metricsOutput != null) {
+      metricsOutput.flush();
+    }
+
+    pending = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      resultOutput.close();
+    } finally {
+      try {
+        if (mapOutput != null) {
+          mapOutput.close();
+        }
+      } finally {
+        if (metricsOutput != null) {
+          metricsOutput.close();
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,331 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Selects the tests affected by the changes between a baseline revision and the classes of the actual build.
+ *
+ * The goal records the {@link ClassFingerprints fingerprints} of the classes of every revision it runs on. If a baseline revision is given,
+ * the fingerprints of the actual classes are compared with the ones of the baseline, and the tests which covered a changed element in the
+ * baseline are looked up in the {@link CoverageIndexMojo coverage index}, which has to be built from the coverage of the baseline.
+ *
+ * At method granularity the tests covering a changed or removed method are selected. If a method has been added, the header or the fields
+ * of a class have changed, or the class has been removed, the tests covering the class are selected. At class granularity every change
+ * selects the tests covering the class. New classes cannot be covered by the baseline tests, they are only reported.
+ *
+ * The test classes are fingerprinted as well. A test class which has been added or changed since the baseline (including its nested
+ * classes) has no or outdated rows in the index, so it is always selected as a whole.
+ *
+ * The selected tests are written to selected.tests (one full test name per line). Surefire does not accept method filters in include files,
+ * so selected.includes lists the classes of the selected tests for the surefire.includesFile property, and selected.filter holds the
+ * method level filter for the test property (e.g. -Dtest=$(cat target/jacoco/selection/selected.filter)).
+ */
+@Mojo(name = "select")
+public class TestSelectionMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco")
+  private File baseDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/classes")
+  private File classesDirectory;
+
+  @Parameter(defaultValue = "${project.build.testOutputDirectory}")
+  private File testClassesDirectory;
+
+  @Parameter(defaultValue = "${project.build.directory}/jacoco/selection")
+  private File outputDirectory;
+
+  /**
+   * The index built from the coverage of the baseline revision.
+   */
+  @Parameter(property = "soda.index", defaultValue = "${project.build.directory}/jacoco/coverage/coverage.index")
+  private File indexFile;
+
+  /**
+   * The revision identifier of the actual program under test.
+   */
+  @Parameter(property = "soda.revision", defaultValue = "0")
+  private String revision;
+
+  /**
+   * The revision to compare with. If it is not set, only the fingerprints of the actual revision are recorded.
+   */
+  @Parameter(property = "soda.baseline")
+  private String baselineRevision;
+
+  /**
+   * The granularity of the comparison, method or class.
+   */
+  @Parameter(property = "soda.granularity", defaultValue = "method")
+  private String granularity;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    boolean classGranularity;
+
+    if ("class".equals(granularity)) {
+      classGranularity = true;
+    } else if ("method".equals(granularity)) {
+      classGranularity = false;
+    } else {
+      throw new MojoFailureException(String.format("Unknown granularity '%s', it must be method or class.", granularity));
+    }
+
+    try {
+      Map<String, String> fingerprints = ClassFingerprints.compute(classesDirectory);
+      Map<String, String> testFingerprints = testClassesDirectory.exists() ? ClassFingerprints.compute(testClassesDirectory) : new TreeMap<String, String>();
+
+      File revisionDirectory = new File(baseDirectory, revision);
+
+      revisionDirectory.mkdirs();
+
+      ClassFingerprints.write(new File(revisionDirectory, String.format("%s.r%s", Constants.FINGERPRINTS_FILE, revision)), fingerprints);
+      ClassFingerprints.write(new File(revisionDirectory, String.format("%s.r%s", Constants.TEST_FINGERPRINTS_FILE, revision)), testFingerprints);
+
+      getLog().info(String.format("Recorded the fingerprints of %d elements and %d test elements of revision %s.", fingerprints.size(),
+          testFingerprints.size(), revision));
+
+      if (baselineRevision == null || baselineRevision.equals(revision)) {
+        return;
+      }
+
+      File baselineFile = new File(new File(baseDirectory, baselineRevision), String.format("%s.r%s", Constants.FINGERPRINTS_FILE, baselineRevision));
+
+      if (!baselineFile.exists()) {
+        throw new MojoFailureException(String.format("No fingerprints were recorded for the baseline revision %s.", baselineRevision));
+      }
+
+      Set<String> impactedElements = getImpactedElements(ClassFingerprints.read(baselineFile), fingerprints, classGranularity);
+
+      File baselineTestFile = new File(new File(baseDirectory, baselineRevision), String.format("%s.r%s", Constants.TEST_FINGERPRINTS_FILE,
+          baselineRevision));
+
+      Set<String> changedTestClasses;
+
+      if (baselineTestFile.exists()) {
+        changedTestClasses = getChangedTestClasses(ClassFingerprints.read(baselineTestFile), testFingerprints);
+      } else {
+        getLog().warn(String.format("No test fingerprints were recorded for the baseline revision %s, the changed test classes are not selected.",
+            baselineRevision));
+
+        changedTestClasses = new TreeSet<String>();
+      }
+
+      selectTests(impactedElements, changedTestClasses);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Cannot select the tests.", e);
+    }
+  }
+
+  /**
+   * Compares the fingerprints of two revisions.
+   *
+   * @param baseline
+   *          The fingerprints of the baseline revision.
+   * @param actual
+   *          The fingerprints of the actual revision.
+   * @param classGranularity
+   *          Whether every change should be attributed to its class.
+   *
+   * @return The names of the baseline elements whose covering tests are affected.
+   */
+  private Set<String> getImpactedElements(Map<String, String> baseline, Map<String, String> actual, boolean classGranularity) {
+    Set<String> impactedElements = new TreeSet<String>();
+    Set<String> changedClasses = new TreeSet<String>();
+    Set<String> newClasses = new TreeSet<String>();
+
+    int changedMethods = 0;
+
+    Set<String> elementNames = new TreeSet<String>(baseline.keySet());
+
+    elementNames.addAll(actual.keySet());
+
+    for (String elementName : elementNames) {
+      String baselineFingerprint = baseline.get(elementName);
+
+      if (baselineFingerprint != null && baselineFingerprint.equals(actual.get(elementName))) {
+        continue;
+      }
+
+      String className = ClassFingerprints.getClassName(elementName);
+
+      if (!baseline.containsKey(className)) {
+        newClasses.add(className);
+
+        continue;
+      }
+
+      changedClasses.add(className);
+
+      boolean method = !elementName.equals(className);
+
+      if (method && baselineFingerprint != null && !classGranularity) {
+        // The method has been changed or removed, only the tests which executed it are affected.
+        impactedElements.add(elementName);
+
+        changedMethods++;
+      } else {
+        impactedElements.add(className);
+      }
+    }
+
+    getLog().info(String.format("%d classes and %d methods have changed since revision %s.", changedClasses.size(), changedMethods, baselineRevision));
+
+    for (String className : changedClasses) {
+      getLog().debug("changed = " + className);
+    }
+
+    if (!newClasses.isEmpty()) {
+      getLog().info(String.format("%d new classes are not covered by the tests of the baseline.", newClasses.size()));
+    }
+
+    return impactedElements;
+  }
+
+  /**
+   * Compares the fingerprints of the test classes of two revisions.
+   *
+   * @param baseline
+   *          The fingerprints of the baseline revision.
+   * @param actual
+   *          The fingerprints of the actual revision.
+   *
+   * @return The names of the test classes which have been added or changed, nested classes are attributed to their top level class.
+   */
+  private Set<String> getChangedTestClasses(Map<String, String> baseline, Map<String, String> actual) {
+    Set<String> changedTestClasses = new TreeSet<String>();
+
+    for (Map.Entry<String, String> entry : actual.entrySet()) {
+      if (!entry.getValue().equals(baseline.get(entry.getKey()))) {
+        String className = ClassFingerprints.getClassName(entry.getKey());
+        int index = className.indexOf('$');
+
+        changedTestClasses.add((index < 0 ? className : className.substring(0, index)).replace('/', '.'));
+      }
+    }
+
+    getLog().info(String.format("%d test classes have been added or changed since revision %s.", changedTestClasses.size(), baselineRevision));
+
+    for (String className : changedTestClasses) {
+      getLog().debug("changed test = " + className);
+    }
+
+    return changedTestClasses;
+  }
+
+  /**
+   * Looks up the tests which cover the impacted elements and writes them to the output files together with the changed test classes.
+   *
+   * @param impactedElements
+   *          The names of the impacted elements.
+   * @param changedTestClasses
+   *          The names of the test classes which are selected as a whole.
+   *
+   * @throws IOException
+   * @throws MojoFailureException
+   */
+  private void selectTests(Set<String> impactedElements, Set<String> changedTestClasses) throws IOException, MojoFailureException {
+    if (!indexFile.exists()) {
+      throw new MojoFailureException(String.format("The coverage index '%s' does not exist, it has to be built by the index goal.", indexFile));
+    }
+
+    List<String> testNames = new ArrayList<String>();
+    int testCount;
+
+    try (CoverageIndexReader index = new CoverageIndexReader(indexFile)) {
+      if (!baselineRevision.equals(index.getRevision())) {
+        throw new MojoFailureException(String.format("The coverage index '%s' has been built from revision %s instead of the baseline revision %s.", indexFile,
+            index.getRevision(), baselineRevision));
+      }
+
+      BitSet selected = new BitSet(index.getTestCount());
+
+      for (String elementName : impactedElements) {
+        for (int test : index.getCoveringTests(elementName)) {
+          selected.set(test);
+        }
+      }
+
+      for (int test = 0; test < index.getTestCount(); test++) {
+        if (changedTestClasses.contains(TestInfo.getClassName(index.getTestName(test)))) {
+          selected.set(test);
+        }
+      }
+
+      for (int test = selected.nextSetBit(0); test >= 0; test = selected.nextSetBit(test + 1)) {
+        testNames.add(index.getTestName(test));
+      }
+
+      testCount = index.getTestCount();
+    }
+
+    Collections.sort(testNames);
+
+    // The methods of the selected tests grouped by their classes.
+    Map<String, List<String>> testMethods = new TreeMap<String, List<String>>();
+
+    for (String testName : testNames) {
+      String className = TestInfo.getClassName(testName);
+
+      if (!className.isEmpty() && !className.equals(testName)) {
+        if (!testMethods.containsKey(className)) {
+          testMethods.put(className, new ArrayList<String>());
+        }
+
+        testMethods.get(className).add(TestInfo.getMethodName(testName));
+      }
+    }
+
+    // The changed test classes are run as a whole, so their new methods are run as well.
+    for (String className : changedTestClasses) {
+      testMethods.put(className, Collections.<String> emptyList());
+    }
+
+    outputDirectory.mkdirs();
+
+    try (
+        BufferedWriter testsOutput = new BufferedWriter(new FileWriter(new File(outputDirectory, "selected.tests")));
+        BufferedWriter includesOutput = new BufferedWriter(new FileWriter(new File(outputDirectory, "selected.includes")));
+        BufferedWriter filterOutput = new BufferedWriter(new FileWriter(new File(outputDirectory, "selected.filter")))
+    ) {
+      for (String testName : testNames) {
+        testsOutput.write(testName + '\n');
+      }
+
+      String separator = "";
+
+      for (Map.Entry<String, List<String>> entry : testMethods.entrySet()) {
+        includesOutput.write(entry.getKey().replace('.', '/') + ".java\n");
+
+        if (entry.getValue().isEmpty()) {
+          filterOutput.write(separator + entry.getKey());
+        } else {
+          filterOutput.write(String.format("%s%s#%s", separator, entry.getKey(), StringUtils.join(entry.getValue().iterator(), "+")));
+        }
+
+        separator = ",";
+      }
+    }
+
+    getLog().info(String.format("Selected %d of %d tests and %d test classes as a whole.", testNames.size(), testCount, changedTestClasses.size()));
+  }
+
+}
@@ -0,0 +1,98 @@
+package hu.sed.soda.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * Writes the lightweight text report of a test. Unlike the XML report it lists only the covered methods and their covered lines, and
+ * it is written in a single pass directly from the probes and the cached {@link ClassStructure class structures}, without building the
+ * coverage model of JaCoCo.
+ *
+ * The first line holds the full name of the test after a '#', every further line is a covered method followed by a tab and its covered
+ * lines in ascending order separated by spaces (none without debug information), e.g.
+ *
+ * <pre>
+ * # demo.CalcTest.testAdd
+ * demo/Calc#add(II)I	12 13
+ * </pre>
+ *
+ * The methods are named like the method elements of the {@link CoverageIndexReader coverage index}, the classes are ordered by their names.
+ */
+public final class TextReportWriter {
+
+  private TextReportWriter() {
+  }
+
+  /**
+   * Writes the report of a test.
+   *
+   * @param file
+   *          The report file.
+   * @param testName
+   *          The full name of the test.
+   * @param executionData
+   *          The execution data of the test.
+   * @param structureCache
+   *          The structures of the analyzed classes, classes not contained by it are left out.
+   *
+   * @throws IOException
+   */
+  public static void write(File file, String testName, ExecutionDataStore executionData, StructureCache structureCache) throws IOException {
+    List<ClassStructure> classes = new ArrayList<ClassStructure>();
+
+    for (ExecutionData data : executionData.getContents()) {
+      ClassStructure structure = structureCache.getClass(data.getId());
+
+      if (structure != null) {
+        classes.add(structure);
+      }
+    }
+
+    Collections.sort(classes, new Comparator<ClassStructure>() {
+      @Override
+      public int compare(ClassStructure a, ClassStructure b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+
+    try (Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+      output.write("# " + testName + '\n');
+
+      for (ClassStructure structure : classes) {
+        boolean[] probes = executionData.get(structure.getId()).getProbes();
+
+        for (MethodStructure method : structure.getMethods()) {
+          if (!method.isCovered(probes)) {
+            continue;
+          }
+
+          output.write(CoverageIndexReader.getMethodElement(structure.getName(), method.getName(), method.getDesc()));
+          output.write('\t');
+
+          String separator = "";
+
+          for (int line : method.getCoveredLines(probes)) {
+            output.write(separator + line);
+
+            separator = " ";
+          }
+
+          output.write('\n');
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CompressedBitmapTest {
+
+  @Test
+  public void testEmptySet() {
+    byte[] encoded = CompressedBitmap.encode(new int[0], 0);
+
+    assertEquals(CompressedBitmap.KIND_ARRAY, encoded[0]);
+    assertArrayEquals(new int[0], CompressedBitmap.decodeValues(ByteBuffer.wrap(encoded)));
+    assertEquals(0, CompressedBitmap.countIntersection(ByteBuffer.wrap(encoded), new long[] { -1L }));
+  }
+
+  @Test
+  public void testSparseSetIsArray() {
+    int[] values = { 3, 200, 70000 };
+
+    byte[] encoded = CompressedBitmap.encode(values, values.length);
+
+    assertEquals(CompressedBitmap.KIND_ARRAY, encoded[0]);
+    assertArrayEquals(values, CompressedBitmap.decodeValues(ByteBuffer.wrap(encoded)));
+  }
+
+  @Test
+  public void testDenseSetIsBitset() {
+    int[] values = new int[130];
+
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+
+    byte[] encoded = CompressedBitmap.encode(values, values.length);
+
+    assertEquals(CompressedBitmap.KIND_BITSET, encoded[0]);
+    assertArrayEquals(values, CompressedBitmap.decodeValues(ByteBuffer.wrap(encoded)));
+  }
+
+  @Test
+  public void testOnlyCountValuesAreEncoded() {
+    int[] values = { 1, 2, 3, 4 };
+
+    assertArrayEquals(new int[] { 1, 2 }, CompressedBitmap.decodeValues(ByteBuffer.wrap(CompressedBitmap.encode(values, 2))));
+  }
+
+  /**
+   * Thins out a set of 640 values step by step, so the encoding switches from the bitset to the array, and checks both forms against the
+   * values.
+   */
+  @Test
+  public void testCrossover() {
+    boolean arraySeen = false;
+    boolean bitsetSeen = false;
+
+    long[] mask = new long[6];
+
+    for (int i = 0; i < 384; i += 3) {
+      mask[i >>> 6] |= 1L << i;
+    }
+
+    for (int step = 1; step <= 40; step++) {
+      int[] values = new int[640 / step + 1];
+      int count = 0;
+
+      for (int value = 0; value < 640; value += step) {
+        values[count++] = value;
+      }
+
+      int[] expected = Arrays.copyOf(values, count);
+      byte[] encoded = CompressedBitmap.encode(values, count);
+
+      if (encoded[0] == CompressedBitmap.KIND_ARRAY) {
+        arraySeen = true;
+      } else {
+        assertEquals(CompressedBitmap.KIND_BITSET, encoded[0]);
+
+        bitsetSeen = true;
+      }
+
+      assertArrayEquals(expected, CompressedBitmap.decodeValues(ByteBuffer.wrap(encoded)));
+
+      long[] words = CompressedBitmap.decodeWords(ByteBuffer.wrap(encoded), 10);
+      int intersection = 0;
+
+      for (int value : expected) {
+        assertEquals(1L << value, words[value >>> 6] & (1L << value));
+
+        if (value < 384 && value % 3 == 0) {
+          intersection++;
+        }
+      }
+
+      assertEquals(expected.length, countBits(words));
+      assertEquals(intersection, CompressedBitmap.countIntersection(ByteBuffer.wrap(encoded), mask));
+    }
+
+    assertEquals(true, arraySeen);
+    assertEquals(true, bitsetSeen);
+  }
+
+  @Test
+  public void testDecodingMovesThePosition() {
+    byte[] first = CompressedBitmap.encode(new int[] { 5, 9 }, 2);
+    byte[] second = CompressedBitmap.encode(new int[] { 1 }, 1);
+
+    ByteBuffer input = ByteBuffer.allocate(first.length + second.length);
+
+    input.put(first).put(second).flip();
+
+    assertArrayEquals(new int[] { 5, 9 }, CompressedBitmap.decodeValues(input));
+    assertArrayEquals(new int[] { 1 }, CompressedBitmap.decodeValues(input));
+    assertEquals(0, input.remaining());
+  }
+
+  private static int countBits(long[] words) {
+    int count = 0;
+
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+
+    return count;
+  }
+
+}
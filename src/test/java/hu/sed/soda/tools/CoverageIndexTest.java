@@ -0,0 +1,70 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoverageIndexTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = folder.newFile("coverage.index");
+
+    int[] dense = new int[100];
+
+    for (int i = 0; i < dense.length; i++) {
+      dense[i] = i;
+    }
+
+    String[] hashes = new String[100];
+    String[] names = new String[100];
+
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = "h" + i;
+      names[i] = "t.T.test" + i;
+    }
+
+    String method = CoverageIndexReader.getMethodElement("a/A", "m", "()V");
+    String line = CoverageIndexReader.getLineElement("a/A", 7);
+
+    CoverageIndexWriter.write(file, "r1", Arrays.asList(hashes), Arrays.asList(names), Arrays.asList(method, line),
+        Arrays.asList(CompressedBitmap.encode(new int[] { 3, 99 }, 2), CompressedBitmap.encode(dense, dense.length)));
+
+    CoverageIndexReader reader = new CoverageIndexReader(file);
+
+    assertEquals("r1", reader.getRevision());
+    assertEquals(100, reader.getTestCount());
+    assertEquals("h42", reader.getTestHash(42));
+    assertEquals("t.T.test42", reader.getTestName(42));
+    assertEquals(2, reader.getElementCount());
+    assertEquals(line, reader.getElementName(1));
+    assertEquals(1, reader.getElementIndex(line));
+    assertEquals(-1, reader.getElementIndex("a/A:8"));
+    assertArrayEquals(new int[] { 3, 99 }, reader.getCoveringTests(method));
+    assertArrayEquals(dense, reader.getCoveringTests(1));
+    assertArrayEquals(new int[0], reader.getCoveringTests("a/A:8"));
+
+    long[] mask = new long[2];
+
+    mask[0] = 1L << 3;
+    mask[1] = 1L << (98 - 64);
+
+    assertEquals(1, reader.countCoveringTests(0, mask));
+    assertEquals(2, reader.countCoveringTests(1, mask));
+
+    reader.close();
+
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+}
@@ -0,0 +1,227 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoverageMatrixTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static ExecFileLoader createLoader(ExecutionData... contents) {
+    ExecFileLoader loader = new ExecFileLoader();
+
+    for (ExecutionData data : contents) {
+      loader.getExecutionDataStore().put(data);
+    }
+
+    return loader;
+  }
+
+  private static boolean[] createProbes(int count, int... executed) {
+    boolean[] probes = new boolean[count];
+
+    for (int probe : executed) {
+      probes[probe] = true;
+    }
+
+    return probes;
+  }
+
+  private static void assertProbes(boolean[] expected, boolean[] actual) {
+    assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = folder.newFile("coverage.matrix");
+    TestMetrics metrics = new TestMetrics("b");
+
+    CoverageMatrixWriter writer = new CoverageMatrixWriter(file);
+
+    writer.write("a", createLoader(new ExecutionData(1, "A", createProbes(3, 0, 2)), new ExecutionData(2, "B", createProbes(70, 69))), null);
+    writer.write("b", createLoader(new ExecutionData(2, "B", createProbes(70, 1)), new ExecutionData(3, "C", createProbes(2))), metrics);
+
+    assertTrue(writer.contains("a"));
+    assertFalse(writer.contains("c"));
+    assertTrue(metrics.isComplete());
+
+    writer.close();
+
+    CoverageMatrixReader reader = new CoverageMatrixReader(file);
+
+    assertTrue(reader.isIndexed());
+    assertEquals(3, reader.getClassCount());
+    assertEquals(2, reader.getTestCount());
+    assertEquals("a", reader.getTestHash(0));
+    assertEquals("b", reader.getTestHash(1));
+
+    ExecutionDataStore store = reader.getExecutionData(0);
+
+    assertProbes(createProbes(3, 0, 2), store.get(1).getProbes());
+    assertProbes(createProbes(70, 69), store.get(2).getProbes());
+    assertEquals("A", store.get(1).getName());
+
+    store = reader.getExecutionData(1);
+
+    // The class without executed probes is kept, so a mismatching class version can still be reported.
+    assertEquals(2, store.getContents().size());
+    assertProbes(createProbes(70, 1), store.get(2).getProbes());
+    assertProbes(createProbes(2), store.get(3).getProbes());
+    assertEquals("C", store.get(3).getName());
+
+    reader.close();
+
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void testSessions() throws IOException {
+    File file = folder.newFile("coverage.matrix");
+
+    ExecFileLoader loader = createLoader(new ExecutionData(1, "A", createProbes(3, 1)));
+
+    loader.getSessionInfoStore().visitSessionInfo(new SessionInfo("s1", 10, 20));
+    loader.getSessionInfoStore().visitSessionInfo(new SessionInfo("s1", 15, 30));
+
+    CoverageMatrixWriter writer = new CoverageMatrixWriter(file);
+
+    writer.write("a", loader, null);
+    writer.write("b", createLoader(new ExecutionData(1, "A", createProbes(3, 2))), null);
+    writer.close();
+
+    // Reopening copies the sessions as well.
+    new CoverageMatrixWriter(file).close();
+
+    CoverageMatrixReader reader = new CoverageMatrixReader(file);
+
+    SessionInfo session = reader.getSessionInfo(0);
+
+    assertEquals("s1", session.getId());
+    assertEquals(10, session.getStartTimeStamp());
+    assertEquals(30, session.getDumpTimeStamp());
+    assertNull(reader.getSessionInfo(1));
+
+    reader.close();
+  }
+
+  @Test
+  public void testReadFirstVersion() throws IOException {
+    File file = folder.newFile("coverage.matrix");
+
+    // A container of the first version, without sessions.
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+      output.writeInt(CoverageMatrixWriter.MAGIC);
+      output.writeShort(CoverageMatrixWriter.VERSION_WITHOUT_SESSIONS);
+
+      output.writeByte(CoverageMatrixWriter.BLOCK_CLASS);
+      output.writeLong(1);
+      IOUtils.writeString(output, "A");
+      output.writeInt(3);
+
+      output.writeByte(CoverageMatrixWriter.BLOCK_TEST);
+      IOUtils.writeString(output, "a");
+      output.writeInt(1);
+      output.writeInt(0);
+      output.writeLong(0x5);
+    }
+
+    CoverageMatrixReader reader = new CoverageMatrixReader(file);
+
+    assertFalse(reader.isIndexed());
+    assertEquals(1, reader.getTestCount());
+    assertNull(reader.getSessionInfo(0));
+    assertProbes(createProbes(3, 0, 2), reader.getExecutionData(0).get(1).getProbes());
+
+    reader.close();
+
+    // Appending converts the container to the actual version.
+    CoverageMatrixWriter writer = new CoverageMatrixWriter(file);
+
+    writer.write("b", createLoader(new ExecutionData(1, "A", createProbes(3, 1))), null);
+    writer.close();
+
+    reader = new CoverageMatrixReader(file);
+
+    assertTrue(reader.isIndexed());
+    assertEquals(2, reader.getTestCount());
+    assertProbes(createProbes(3, 0, 2), reader.getExecutionData(0).get(1).getProbes());
+    assertProbes(createProbes(3, 1), reader.getExecutionData(1).get(1).getProbes());
+
+    reader.close();
+  }
+
+  @Test
+  public void testAppend() throws IOException {
+    File file = folder.newFile("coverage.matrix");
+
+    CoverageMatrixWriter writer = new CoverageMatrixWriter(file);
+
+    writer.write("a", createLoader(new ExecutionData(1, "A", createProbes(3, 1))), null);
+    writer.close();
+
+    writer = new CoverageMatrixWriter(file);
+
+    assertTrue(writer.contains("a"));
+
+    writer.write("b", createLoader(new ExecutionData(1, "A", createProbes(3, 2)), new ExecutionData(2, "B", createProbes(1, 0))), null);
+    writer.close();
+
+    CoverageMatrixReader reader = new CoverageMatrixReader(file);
+
+    assertEquals(2, reader.getClassCount());
+    assertEquals(2, reader.getTestCount());
+    assertProbes(createProbes(3, 1), reader.getExecutionData(0).get(1).getProbes());
+    assertProbes(createProbes(3, 2), reader.getExecutionData(1).get(1).getProbes());
+    assertProbes(createProbes(1, 0), reader.getExecutionData(1).get(2).getProbes());
+
+    reader.close();
+  }
+
+  @Test
+  public void testReadWithoutIndex() throws IOException {
+    File file = folder.newFile("coverage.matrix");
+
+    CoverageMatrixWriter writer = new CoverageMatrixWriter(file);
+
+    writer.write("a", createLoader(new ExecutionData(1, "A", createProbes(3, 1))), null);
+    writer.close();
+
+    CoverageMatrixReader reader = new CoverageMatrixReader(file);
+    long recordsEnd = reader.getRecordsEnd();
+
+    reader.close();
+
+    // Simulating a crash before the index has been written.
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(recordsEnd);
+    }
+
+    reader = new CoverageMatrixReader(file);
+
+    assertFalse(reader.isIndexed());
+    assertEquals(1, reader.getTestCount());
+    assertEquals("a", reader.getTestHash(0));
+    assertProbes(createProbes(3, 1), reader.getExecutionData(0).get(1).getProbes());
+
+    reader.close();
+  }
+
+}
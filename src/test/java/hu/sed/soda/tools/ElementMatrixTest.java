@@ -0,0 +1,59 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ElementMatrixTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = new File(folder.getRoot(), "method.matrix");
+
+    try (ElementMatrixWriter writer = new ElementMatrixWriter(file, "method", Arrays.asList("A#a()V", "A#b()V", "B#c()V"))) {
+      writer.write("h1", "t.T.first", CompressedBitmap.encode(new int[] { 0, 2 }, 2));
+      writer.write("h2", "", CompressedBitmap.encode(new int[0], 0));
+      writer.finish();
+    }
+
+    ElementMatrixReader reader = new ElementMatrixReader(file);
+
+    assertEquals("method", reader.getGranularity());
+    assertEquals(3, reader.getElementCount());
+    assertEquals("B#c()V", reader.getElementName(2));
+    assertEquals(2, reader.getTestCount());
+    assertEquals("h1", reader.getTestHash(0));
+    assertEquals("t.T.first", reader.getTestName(0));
+    assertEquals("h2", reader.getTestName(1));
+    assertArrayEquals(new int[] { 0, 2 }, reader.getCoveredElements(0));
+    assertArrayEquals(new int[0], reader.getCoveredElements(1));
+
+    reader.close();
+
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void testUnfinishedMatrixIsDiscarded() throws IOException {
+    File file = new File(folder.getRoot(), "line.matrix");
+
+    try (ElementMatrixWriter writer = new ElementMatrixWriter(file, "line", Arrays.asList("A:1"))) {
+      writer.write("h1", "t.T.first", CompressedBitmap.encode(new int[] { 0 }, 1));
+    }
+
+    assertFalse(file.exists());
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+}
@@ -0,0 +1,113 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Test;
+
+public class IOUtilsTest {
+
+  @Test
+  public void testStringRoundTrip() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+
+    assertEquals(4 + 5, IOUtils.writeString(output, "hello"));
+    assertEquals(4, IOUtils.writeString(output, null));
+    assertEquals(4, IOUtils.writeString(output, ""));
+    assertEquals(4 + 7, IOUtils.writeString(output, "\u00e1rv\u00edz"));
+
+    output.close();
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+    assertEquals("hello", IOUtils.readString(input));
+    assertNull(IOUtils.readString(input));
+    assertEquals("", IOUtils.readString(input));
+    assertEquals("\u00e1rv\u00edz", IOUtils.readString(input));
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+    assertEquals("hello", IOUtils.readString(buffer));
+    assertNull(IOUtils.readString(buffer));
+    assertEquals("", IOUtils.readString(buffer));
+    assertEquals("\u00e1rv\u00edz", IOUtils.readString(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test(expected = IOException.class)
+  public void testCorruptStringLength() throws IOException {
+    IOUtils.readString(new DataInputStream(new ByteArrayInputStream(new byte[] { 0x7f, 0, 0, 0, 'a' })));
+  }
+
+  @Test
+  public void testReadCount() throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(new byte[] { 0, 0, 0, 2, 1, 2, 3, 4, 5, 6, 7, 8 }));
+
+    assertEquals(2, IOUtils.readCount(input, 4));
+
+    input = new DataInputStream(new ByteArrayInputStream(new byte[] { 0, 0, 0, 3, 1, 2, 3, 4, 5, 6, 7, 8 }));
+
+    try {
+      IOUtils.readCount(input, 4);
+
+      fail("A table larger than the input has been accepted.");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testSeek() {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+
+    IOUtils.seek(buffer, 2);
+
+    assertEquals(3, buffer.get());
+  }
+
+  @Test
+  public void testWaitForRethrowsIOException() {
+    FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        throw new IOException("broken");
+      }
+    });
+
+    task.run();
+
+    try {
+      IOUtils.waitFor(task, "Test");
+
+      fail("The failure of the task has been lost.");
+    } catch (IOException e) {
+      assertEquals("broken", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testWaitForReturnsResult() throws IOException {
+    FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+      @Override
+      public String call() {
+        return "done";
+      }
+    });
+
+    task.run();
+
+    assertEquals("done", IOUtils.waitFor(task, "Test"));
+  }
+
+}
@@ -0,0 +1,116 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MergeMojoTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private MergeMojo createMojo(File inputDirectory) throws IOException, IllegalAccessException {
+    MergeMojo mojo = new MergeMojo();
+
+    ReflectionUtils.setVariableValueInObject(mojo, "inputDirectory", inputDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "classesDirectory", folder.newFolder("classes"));
+    ReflectionUtils.setVariableValueInObject(mojo, "sourceDirectory", folder.newFolder("src"));
+    ReflectionUtils.setVariableValueInObject(mojo, "baseDirectory", folder.getRoot());
+    ReflectionUtils.setVariableValueInObject(mojo, "mergedFile", new File(folder.getRoot(), "merged.exec"));
+    ReflectionUtils.setVariableValueInObject(mojo, "reportFile", new File(folder.getRoot(), "merged.xml"));
+    ReflectionUtils.setVariableValueInObject(mojo, "threads", 2);
+
+    return mojo;
+  }
+
+  /**
+   * Writes a matrix of tests which execute the probe of their index in class A, and with the given sessions.
+   */
+  private File writeMatrix(int tests, SessionInfo... sessions) throws IOException {
+    File inputDirectory = folder.newFolder("raw");
+
+    CoverageMatrixWriter writer = new CoverageMatrixWriter(new File(inputDirectory, "coverage." + Constants.MATRIX_FILE_EXT));
+
+    for (int test = 0; test < tests; test++) {
+      boolean[] probes = new boolean[tests + 1];
+
+      probes[test] = true;
+
+      ExecFileLoader loader = new ExecFileLoader();
+
+      loader.getExecutionDataStore().put(new ExecutionData(1, "A", probes));
+
+      if (test < sessions.length) {
+        loader.getSessionInfoStore().visitSessionInfo(sessions[test]);
+      }
+
+      writer.write("h" + test, loader, null);
+    }
+
+    writer.close();
+
+    return inputDirectory;
+  }
+
+  private ExecFileLoader loadMerged() throws IOException {
+    ExecFileLoader merged = new ExecFileLoader();
+
+    merged.load(new File(folder.getRoot(), "merged.exec"));
+
+    return merged;
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    // More tests than a leaf task merges, so the partial results are merged as well.
+    int tests = 40;
+
+    createMojo(writeMatrix(tests, new SessionInfo("s0", 20, 30), new SessionInfo("s1", 10, 25))).execute();
+
+    ExecFileLoader merged = loadMerged();
+
+    boolean[] expected = new boolean[tests + 1];
+
+    Arrays.fill(expected, 0, tests, true);
+
+    assertEquals(Arrays.toString(expected), Arrays.toString(merged.getExecutionDataStore().get(1).getProbes()));
+
+    // The sessions are reduced to one from the earliest start to the latest dump.
+    assertEquals(1, merged.getSessionInfoStore().getInfos().size());
+
+    SessionInfo session = merged.getSessionInfoStore().getInfos().get(0);
+
+    assertEquals(10, session.getStartTimeStamp());
+    assertEquals(30, session.getDumpTimeStamp());
+
+    assertTrue(new File(folder.getRoot(), "merged.xml").length() > 0);
+  }
+
+  @Test
+  public void testMergeWithoutSessions() throws Exception {
+    long startTime = System.currentTimeMillis();
+
+    createMojo(writeMatrix(3)).execute();
+
+    ExecFileLoader merged = loadMerged();
+
+    assertEquals(Arrays.toString(new boolean[] { true, true, true, false }),
+        Arrays.toString(merged.getExecutionDataStore().get(1).getProbes()));
+
+    // The time of the merge is recorded instead.
+    assertEquals(1, merged.getSessionInfoStore().getInfos().size());
+    assertTrue(merged.getSessionInfoStore().getInfos().get(0).getStartTimeStamp() >= startTime);
+  }
+
+}
@@ -0,0 +1,65 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MutationMatrixTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = folder.newFile("TestCoverage.matrix");
+
+    // The ids follow the order of the execution, the file is sorted by the names.
+    String[] testNames = { "t.T.c", "t.T.a", "t.T.b" };
+    String[] mutationNames = { "m3", null, "m1", "m2" };
+
+    BitSet coveringTests = new BitSet();
+
+    coveringTests.set(0);
+    coveringTests.set(2);
+
+    Map<Integer, int[]> testMutations = new HashMap<>();
+
+    testMutations.put(0, new int[] { 0, 2 });
+    testMutations.put(2, new int[] { 2, 3 });
+
+    MutationMatrixWriter.write(file, testNames, coveringTests, mutationNames, testMutations);
+
+    MutationMatrixReader reader = new MutationMatrixReader(file);
+
+    assertEquals(3, reader.getTestCount());
+    assertEquals("t.T.a", reader.getTestName(0));
+    assertEquals("t.T.b", reader.getTestName(1));
+    assertEquals("t.T.c", reader.getTestName(2));
+    assertFalse(reader.isCovering(0));
+    assertTrue(reader.isCovering(1));
+    assertTrue(reader.isCovering(2));
+
+    assertEquals(3, reader.getMutantCount());
+    assertEquals("m1", reader.getMutantId(0));
+    assertEquals(-1, reader.getMutantIndex("m4"));
+    assertArrayEquals(new int[] { 1, 2 }, reader.getCoveringTests(reader.getMutantIndex("m1")));
+    assertArrayEquals(new int[] { 1 }, reader.getCoveringTests(reader.getMutantIndex("m2")));
+    assertArrayEquals(new int[] { 2 }, reader.getCoveringTests(reader.getMutantIndex("m3")));
+
+    reader.close();
+
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+}
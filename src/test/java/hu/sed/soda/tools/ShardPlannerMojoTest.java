@@ -0,0 +1,101 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardPlannerMojoTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ShardPlannerMojo createMojo(File baseDirectory, File outputDirectory, int shards) throws IllegalAccessException {
+    ShardPlannerMojo mojo = new ShardPlannerMojo();
+
+    ReflectionUtils.setVariableValueInObject(mojo, "baseDirectory", baseDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "outputDirectory", outputDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "testClassesDirectory", new File(folder.getRoot(), "test-classes"));
+    ReflectionUtils.setVariableValueInObject(mojo, "revision", "1");
+    ReflectionUtils.setVariableValueInObject(mojo, "shards", shards);
+
+    return mojo;
+  }
+
+  /**
+   * Records the durations of the tests in milliseconds, the tests are named t.&lt;class&gt;.test&lt;i&gt;.
+   */
+  private File recordDurations(String[] classNames, long[] durations) throws IOException {
+    File baseDirectory = folder.newFolder("jacoco");
+    File revisionDirectory = new File(baseDirectory, "1");
+
+    revisionDirectory.mkdirs();
+
+    try (
+        Writer mapOutput = new FileWriter(new File(revisionDirectory, Constants.MAP_FILE + ".r1"));
+        Writer metricsOutput = new FileWriter(new File(revisionDirectory, Constants.METRICS_FILE + ".r1"))
+    ) {
+      for (int i = 0; i < classNames.length; i++) {
+        String hash = "h" + i;
+
+        mapOutput.write(String.format("%s%st.%s.test%d\n", hash, Constants.MAP_FILE_SEPARATOR, classNames[i], i));
+        metricsOutput.write(String.format("%s%s%d%s0%s0%s0%s0\n", hash, Constants.METRICS_FILE_SEPARATOR, durations[i] * 1000,
+            Constants.METRICS_FILE_SEPARATOR, Constants.METRICS_FILE_SEPARATOR, Constants.METRICS_FILE_SEPARATOR, Constants.METRICS_FILE_SEPARATOR));
+      }
+    }
+
+    return baseDirectory;
+  }
+
+  private static List<String> readIncludes(File file) throws IOException {
+    List<String> includes = new ArrayList<String>();
+
+    for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+      if (!line.startsWith("#")) {
+        includes.add(line);
+      }
+    }
+
+    return includes;
+  }
+
+  @Test
+  public void testLongestProcessingTimeFirst() throws Exception {
+    // The durations of the classes are A=7, B=5, C=4 (two tests), D=3 and E=3.
+    File baseDirectory = recordDurations(new String[] { "A", "B", "C", "C", "D", "E" }, new long[] { 7, 5, 1, 3, 3, 3 });
+    File outputDirectory = new File(baseDirectory, "shards");
+
+    createMojo(baseDirectory, outputDirectory, 2).execute();
+
+    // A -> 1 (7), B -> 2 (5), C -> 2 (9), D -> 1 (10), E -> 2 (12).
+    assertEquals(Arrays.asList("t/A.java", "t/D.java"), readIncludes(new File(outputDirectory, "shard1.includes")));
+    assertEquals(Arrays.asList("t/B.java", "t/C.java", "t/E.java"), readIncludes(new File(outputDirectory, "shard2.includes")));
+  }
+
+  @Test
+  public void testStaleShardsDeleted() throws Exception {
+    File baseDirectory = recordDurations(new String[] { "A", "B", "C" }, new long[] { 1, 2, 3 });
+    File outputDirectory = new File(baseDirectory, "shards");
+
+    createMojo(baseDirectory, outputDirectory, 3).execute();
+    createMojo(baseDirectory, outputDirectory, 1).execute();
+
+    assertEquals(Arrays.asList("t/A.java", "t/B.java", "t/C.java"), readIncludes(new File(outputDirectory, "shard1.includes")));
+    assertFalse(new File(outputDirectory, "shard2.includes").exists());
+    assertFalse(new File(outputDirectory, "shard3.includes").exists());
+  }
+
+}
@@ -0,0 +1,178 @@
+package hu.sed.soda.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSelectionMojoTest {
+
+  /**
+   * The class under test of the fixture.
+   */
+  static class Calc {
+
+    int add(int a, int b) {
+      return a + b;
+    }
+
+    int sub(int a, int b) {
+      return a - b;
+    }
+
+  }
+
+  /**
+   * A test class of the fixture, it is added in the second revision.
+   */
+  static class CalcTest {
+
+    void testAdd() {
+      new Calc().add(1, 2);
+    }
+
+  }
+
+  private static final String CALC = Calc.class.getName().replace('.', '/');
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File baseDirectory;
+
+  private File classesDirectory;
+
+  private File testClassesDirectory;
+
+  private File outputDirectory;
+
+  private File indexFile;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDirectory = folder.newFolder("jacoco");
+    classesDirectory = folder.newFolder("classes");
+    testClassesDirectory = new File(folder.getRoot(), "test-classes");
+    outputDirectory = new File(baseDirectory, "selection");
+    indexFile = new File(baseDirectory, "coverage.index");
+
+    copyClass(Calc.class, classesDirectory);
+
+    // The class element is covered by every test, the method elements by the tests calling them.
+    CoverageIndexWriter.write(indexFile, "1", Arrays.asList("h0", "h1", "h2"), Arrays.asList("t.A.testAdd", "t.A.testSub", "t.B.testNew"),
+        Arrays.asList(CALC, CoverageIndexReader.getMethodElement(CALC, "add", "(II)I"), CoverageIndexReader.getMethodElement(CALC, "sub", "(II)I")),
+        Arrays.asList(CompressedBitmap.encode(new int[] { 0, 1, 2 }, 3), CompressedBitmap.encode(new int[] { 0 }, 1),
+            CompressedBitmap.encode(new int[] { 1 }, 1)));
+  }
+
+  private static void copyClass(Class<?> type, File directory) throws IOException {
+    String path = type.getName().replace('.', '/') + ".class";
+    File file = new File(directory, path);
+
+    file.getParentFile().mkdirs();
+
+    try (InputStream input = type.getClassLoader().getResourceAsStream(path)) {
+      Files.copy(input, file.toPath());
+    }
+  }
+
+  private TestSelectionMojo createMojo(String revision, String baselineRevision, String granularity) throws IllegalAccessException {
+    TestSelectionMojo mojo = new TestSelectionMojo();
+
+    ReflectionUtils.setVariableValueInObject(mojo, "baseDirectory", baseDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "classesDirectory", classesDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "testClassesDirectory", testClassesDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "outputDirectory", outputDirectory);
+    ReflectionUtils.setVariableValueInObject(mojo, "indexFile", indexFile);
+    ReflectionUtils.setVariableValueInObject(mojo, "revision", revision);
+    ReflectionUtils.setVariableValueInObject(mojo, "baselineRevision", baselineRevision);
+    ReflectionUtils.setVariableValueInObject(mojo, "granularity", granularity);
+
+    return mojo;
+  }
+
+  /**
+   * Records the fingerprints of the first revision, as if the add method had been different then.
+   */
+  private void recordBaselineWithChangedAdd() throws Exception {
+    createMojo("1", null, "method").execute();
+
+    File fingerprintsFile = new File(new File(baseDirectory, "1"), Constants.FINGERPRINTS_FILE + ".r1");
+    Map<String, String> fingerprints = ClassFingerprints.read(fingerprintsFile);
+
+    fingerprints.put(CoverageIndexReader.getMethodElement(CALC, "add", "(II)I"), "0");
+
+    ClassFingerprints.write(fingerprintsFile, fingerprints);
+  }
+
+  private List<String> readOutput(String fileName) throws IOException {
+    return Files.readAllLines(new File(outputDirectory, fileName).toPath(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testMethodGranularity() throws Exception {
+    recordBaselineWithChangedAdd();
+
+    createMojo("2", "1", "method").execute();
+
+    assertEquals(Arrays.asList("t.A.testAdd"), readOutput("selected.tests"));
+    assertEquals(Arrays.asList("t/A.java"), readOutput("selected.includes"));
+    assertEquals(Arrays.asList("t.A#testAdd"), readOutput("selected.filter"));
+  }
+
+  @Test
+  public void testClassGranularity() throws Exception {
+    recordBaselineWithChangedAdd();
+
+    createMojo("2", "1", "class").execute();
+
+    assertEquals(Arrays.asList("t.A.testAdd", "t.A.testSub", "t.B.testNew"), readOutput("selected.tests"));
+    assertEquals(Arrays.asList("t.A#testAdd+testSub,t.B#testNew"), readOutput("selected.filter"));
+  }
+
+  @Test
+  public void testUnchanged() throws Exception {
+    createMojo("1", null, "method").execute();
+    createMojo("2", "1", "method").execute();
+
+    assertEquals(Collections.<String> emptyList(), readOutput("selected.tests"));
+    assertEquals(Collections.<String> emptyList(), readOutput("selected.filter"));
+  }
+
+  @Test
+  public void testAddedTestClass() throws Exception {
+    createMojo("1", null, "method").execute();
+
+    copyClass(CalcTest.class, testClassesDirectory);
+
+    createMojo("2", "1", "method").execute();
+
+    // The nested test class is attributed to its top level class, which is run as a whole.
+    String testClassName = TestSelectionMojoTest.class.getName();
+
+    assertEquals(Collections.<String> emptyList(), readOutput("selected.tests"));
+    assertEquals(Arrays.asList(testClassName.replace('.', '/') + ".java"), readOutput("selected.includes"));
+    assertEquals(Arrays.asList(testClassName), readOutput("selected.filter"));
+  }
+
+  @Test(expected = MojoFailureException.class)
+  public void testIndexOfAnotherRevision() throws Exception {
+    createMojo("2", null, "method").execute();
+    createMojo("3", "2", "method").execute();
+  }
+
+}